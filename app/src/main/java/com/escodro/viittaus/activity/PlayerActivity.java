@@ -1,8 +1,12 @@
 package com.escodro.viittaus.activity;
 
+import android.Manifest;
 import android.content.ContentResolver;
+import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Bundle;
+import android.support.v4.app.ActivityCompat;
+import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
 
 import com.escodro.viittaus.R;
@@ -10,6 +14,11 @@ import com.escodro.viittaus.view.PlayerView;
 
 public class PlayerActivity extends AppCompatActivity {
 
+    /**
+     * Request code of the record audio permission, needed to capture the audio spectrum.
+     */
+    private static final int REQUEST_RECORD_AUDIO = 1;
+
     private PlayerView mPlayerView;
 
     @Override
@@ -23,6 +32,21 @@ public class PlayerActivity extends AppCompatActivity {
             mPlayerView.setMusicTitle("Endeavour");
             mPlayerView.setAudioUri(resourceIdToUri(R.raw.endeavour));
         }
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.RECORD_AUDIO}, REQUEST_RECORD_AUDIO);
+        }
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, String[] permissions,
+                                           int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode == REQUEST_RECORD_AUDIO && grantResults.length > 0
+                && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+            mPlayerView.onRecordAudioPermissionGranted();
+        }
     }
 
     private Uri resourceIdToUri(int resId) {
@@ -5,38 +5,90 @@ import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 
 import com.escodro.viittaus.R;
+import com.escodro.viittaus.radar.ContactFeed;
+import com.escodro.viittaus.radar.ContactSimulator;
 import com.escodro.viittaus.view.RadarView;
 
+import java.io.IOException;
+import java.nio.channels.Pipe;
+
 /**
- * {@link AppCompatActivity} with the {@link RadarView}.
+ * {@link AppCompatActivity} with the {@link RadarView}, fed with simulated contacts by a
+ * {@link ContactFeed} through a loopback {@link Pipe}.
  * <p/>
  * Created by IgorEscodro on 20/11/16.
  */
 
 public class RadarActivity extends AppCompatActivity {
 
+    /**
+     * Quantity of simulated contacts shown in the radar.
+     */
+    private static final int CONTACT_COUNT = 1000;
+
     /**
      * {@link RadarView} reference.
      */
     private RadarView mRadarView;
 
+    /**
+     * Feed of the contacts shown in the radar, or null while paused.
+     */
+    private ContactFeed mContactFeed;
+
+    /**
+     * Simulator writing the contacts in the feed, or null while paused.
+     */
+    private ContactSimulator mContactSimulator;
+
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_radar);
         mRadarView = (RadarView) findViewById(R.id.radar_view);
+        mRadarView.setPersistenceEnabled(true);
+    }
+
+    /**
+     * Start the simulated contact feed, writing in one end of a pipe and reading from the other.
+     */
+    private void startContactFeed() {
+        final Pipe pipe;
+        try {
+            pipe = Pipe.open();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        mContactFeed = new ContactFeed(pipe.source(), mRadarView, false);
+        mContactSimulator = new ContactSimulator(pipe.sink(), CONTACT_COUNT);
+        mContactFeed.start();
+        mContactSimulator.start();
+    }
 
+    /**
+     * Stop the simulated contact feed, if it is running.
+     */
+    private void stopContactFeed() {
+        if (mContactFeed != null) {
+            mContactSimulator.stop();
+            mContactFeed.stop();
+            mContactSimulator = null;
+            mContactFeed = null;
+        }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
         mRadarView.resume();
+        startContactFeed();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        stopContactFeed();
         mRadarView.pause();
     }
 }
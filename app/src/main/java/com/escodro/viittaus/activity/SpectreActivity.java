@@ -6,23 +6,46 @@ import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 
 import com.escodro.viittaus.R;
+import com.escodro.viittaus.audio.SpectrumAnalyzer;
 import com.escodro.viittaus.view.SpectreView;
 
 import java.util.Random;
 
 public class SpectreActivity extends AppCompatActivity {
 
+    /**
+     * Sample rate of the generated audio.
+     */
+    private static final int SAMPLE_RATE = 44100;
+
+    /**
+     * Quantity of samples generated and analyzed in each frame.
+     */
+    private static final int FRAME_SIZE = 1024;
+
+    /**
+     * Interval between two analyzed frames, in milliseconds.
+     */
+    private static final int FRAME_INTERVAL = 1000 / 30;
+
     private SpectreView mSpectreView;
     private Handler mHandler;
+    private SpectrumAnalyzer mAnalyzer;
+    private short[] mPcm;
+    private Random mRandom;
+    private long mSampleIndex;
 
     /**
-     * Runnable to add random values to the {@link SpectreView} and loop after 300 milliseconds.
+     * Runnable to analyze a frame of generated audio in the {@link SpectreView} and loop after
+     * {@link #FRAME_INTERVAL} milliseconds.
      */
     private final Runnable mRunnable = new Runnable() {
         @Override
         public void run() {
-            mSpectreView.add(getRandomNumber());
-            mHandler.postDelayed(mRunnable, 300);
+            generatePcm();
+            mAnalyzer.analyze(mPcm, 0, mPcm.length, SAMPLE_RATE);
+            mSpectreView.add(mAnalyzer.getVolumes(), 0, mAnalyzer.getBandCount());
+            mHandler.postDelayed(mRunnable, FRAME_INTERVAL);
         }
     };
 
@@ -32,27 +55,41 @@ public class SpectreActivity extends AppCompatActivity {
 
         setContentView(R.layout.activity_spectre);
 
-        mHandler = new Handler();
-        mHandler.post(mRunnable);
-
         mSpectreView = (SpectreView) findViewById(R.id.spectre);
 
+        mAnalyzer = new SpectrumAnalyzer(FRAME_SIZE, mSpectreView.getBarCount());
+        mPcm = new short[FRAME_SIZE];
+        mRandom = new Random();
+
+        mHandler = new Handler();
     }
 
-    private int getRandomNumber() {
-        final Random random = new Random();
-        return random.nextInt(100 - 30) + 30;
+    /**
+     * Generate a frame of audio with three tones slowly sweeping the spectrum and some noise.
+     */
+    private void generatePcm() {
+        for (int i = 0; i < mPcm.length; i++) {
+            final double time = (double) mSampleIndex++ / SAMPLE_RATE;
+            final double sweep = 0.5 + 0.5 * Math.sin(2 * Math.PI * 0.1 * time);
+            final double sample = 0.4 * Math.sin(2 * Math.PI * (80 + 220 * sweep) * time)
+                    + 0.3 * Math.sin(2 * Math.PI * (600 + 1800 * sweep) * time)
+                    + 0.2 * Math.sin(2 * Math.PI * (4000 + 8000 * sweep) * time)
+                    + 0.05 * (mRandom.nextFloat() - 0.5);
+            mPcm[i] = (short) (sample * Short.MAX_VALUE);
+        }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
         mSpectreView.resume();
+        mHandler.post(mRunnable);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        mHandler.removeCallbacks(mRunnable);
         mSpectreView.pause();
     }
 }
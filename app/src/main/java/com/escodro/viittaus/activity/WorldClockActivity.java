@@ -0,0 +1,49 @@
+package com.escodro.viittaus.activity;
+
+import android.os.Bundle;
+import android.support.annotation.Nullable;
+import android.support.v7.app.AppCompatActivity;
+
+import com.escodro.viittaus.R;
+import com.escodro.viittaus.view.WorldClockView;
+
+/**
+ * {@link AppCompatActivity} with the {@link WorldClockView}.
+ */
+public class WorldClockActivity extends AppCompatActivity {
+
+    /**
+     * Time zones shown in the {@link WorldClockView}.
+     */
+    private static final String[] TIME_ZONES = {
+            "America/Los_Angeles", "America/Denver", "America/Chicago", "America/New_York",
+            "America/Sao_Paulo", "Atlantic/Reykjavik", "Europe/London", "Europe/Dublin",
+            "Europe/Paris", "Europe/Berlin", "Europe/Stockholm", "Europe/Helsinki",
+            "Africa/Johannesburg", "Asia/Dubai", "Asia/Kolkata", "Asia/Singapore",
+            "Asia/Hong_Kong", "Asia/Seoul", "Asia/Tokyo", "Australia/Sydney"};
+
+    /**
+     * {@link WorldClockView} reference.
+     */
+    private WorldClockView mWorldClockView;
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_world_clock);
+        mWorldClockView = (WorldClockView) findViewById(R.id.world_clock_view);
+        mWorldClockView.setTimeZones(TIME_ZONES);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mWorldClockView.resume();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mWorldClockView.pause();
+    }
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Handler;
 import android.view.View;
 import android.view.animation.Animation;
@@ -14,8 +15,16 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.escodro.viittaus.R;
+import com.escodro.viittaus.audio.SpectrumBus;
+import com.escodro.viittaus.audio.SpectrumCapture;
+import com.escodro.viittaus.audio.SpectrumTrack;
+import com.escodro.viittaus.audio.SpectrumTrackStore;
+import com.escodro.viittaus.audio.WaveformEnvelope;
+import com.escodro.viittaus.audio.WaveformEnvelopeStore;
+import com.escodro.viittaus.time.PlaybackClock;
 import com.escodro.viittaus.view.ArcSeekBar;
 import com.escodro.viittaus.view.PlayerView;
+import com.escodro.viittaus.view.SpectreView;
 import com.escodro.viittaus.view.transformation.RoundedTransformation;
 import com.squareup.picasso.Picasso;
 
@@ -27,13 +36,24 @@ import java.io.IOException;
  * Created by Igor Escodro on 25/5/2016.
  */
 public class PlayerAdapter implements MediaPlayer.OnPreparedListener, MediaPlayer
-        .OnCompletionListener, Runnable, View.OnClickListener {
+        .OnCompletionListener, MediaPlayer.OnSeekCompleteListener, Runnable,
+        View.OnClickListener {
 
     /**
      * Constant to represent the total time of the spinning animation.
      */
     private final static int ROTATE_ANIMATION_DURATION = 8000;
 
+    /**
+     * Quantity of spectrum frames kept in the {@link SpectrumBus} for slow readers.
+     */
+    private final static int SPECTRUM_BUS_CAPACITY = 8;
+
+    /**
+     * Interval between two syncs of the {@link PlaybackClock} while playing, in milliseconds.
+     */
+    private final static int CLOCK_SYNC_INTERVAL = 1000;
+
     /**
      * {@link MediaPlayer} reference.
      */
@@ -50,10 +70,55 @@ public class PlayerAdapter implements MediaPlayer.OnPreparedListener, MediaPlaye
     private final PlayerHolder mHolder;
 
     /**
-     * {@link Handler} to control the {@link ArcSeekBar} update.
+     * Clock with the playback position, read by the views on every frame.
+     */
+    private final PlaybackClock mPlaybackClock;
+
+    /**
+     * Duration of the audio, in milliseconds, read once when it is prepared.
+     */
+    private int mDuration;
+
+    /**
+     * Boolean to represent if the audio is prepared.
+     */
+    private boolean mPrepared;
+
+    /**
+     * Boolean to represent if the audio is playing.
+     */
+    private boolean mPlaying;
+
+    /**
+     * {@link Handler} to sync the {@link PlaybackClock} and update the time texts.
      */
     private final Handler mHandler;
 
+    /**
+     * Store with the precomputed spectrum of the tracks.
+     */
+    private final SpectrumTrackStore mSpectrumTrackStore;
+
+    /**
+     * Store with the waveform envelope of the tracks.
+     */
+    private final WaveformEnvelopeStore mEnvelopeStore;
+
+    /**
+     * Bus with the spectrum of the audio output, published while there is no precomputed one.
+     */
+    private final SpectrumBus mSpectrumBus;
+
+    /**
+     * Producer of the {@link SpectrumBus}.
+     */
+    private SpectrumCapture mSpectrumCapture;
+
+    /**
+     * Boolean to represent if the spectrum must be captured from the audio output.
+     */
+    private boolean mCaptureSpectrum;
+
     /**
      * Rotate {@link Animation}.
      */
@@ -74,6 +139,12 @@ public class PlayerAdapter implements MediaPlayer.OnPreparedListener, MediaPlaye
         mHolder = new PlayerHolder(view);
         mHandler = new Handler();
         mContext = context;
+        mSpectrumTrackStore = new SpectrumTrackStore(context);
+        mEnvelopeStore = new WaveformEnvelopeStore(context);
+        mSpectrumBus = new SpectrumBus(mHolder.spectreView.getBarCount(), SPECTRUM_BUS_CAPACITY);
+        mPlaybackClock = new PlaybackClock();
+        mHolder.arcSeekBar.setPlaybackClock(mPlaybackClock);
+        mHolder.spectreView.setPlaybackClock(mPlaybackClock);
         createRotateAnimation();
         initMediaPlayer();
     }
@@ -86,7 +157,8 @@ public class PlayerAdapter implements MediaPlayer.OnPreparedListener, MediaPlaye
         mMediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
         mMediaPlayer.setOnPreparedListener(this);
         mMediaPlayer.setOnCompletionListener(this);
-        mHandler.postDelayed(this, 100);
+        mMediaPlayer.setOnSeekCompleteListener(this);
+        mSpectrumCapture = new SpectrumCapture(mMediaPlayer, mPlaybackClock, mSpectrumBus);
         mHolder.playPauseButton.setOnClickListener(this);
         updateButtonState();
     }
@@ -129,14 +201,17 @@ public class PlayerAdapter implements MediaPlayer.OnPreparedListener, MediaPlaye
             pauseAlbumAnimation();
             mMediaPlayer.pause();
         }
+        mPlaying = mMediaPlayer.isPlaying();
         updateButtonState();
+        mHandler.removeCallbacks(this);
+        run();
     }
 
     /**
      * Updates the Play/Pause {@link ImageButton} based on the {@link MediaPlayer} status
      */
     private void updateButtonState() {
-        if (mMediaPlayer.isPlaying()) {
+        if (mPlaying) {
             mHolder.playPauseButton.setImageResource(R.drawable.ic_pause);
         } else {
             mHolder.playPauseButton.setImageResource(R.drawable.ic_play);
@@ -179,35 +254,61 @@ public class PlayerAdapter implements MediaPlayer.OnPreparedListener, MediaPlaye
         return String.format(mContext.getString(R.string.player_time), minutes, seconds);
     }
 
+    /**
+     * Sync the {@link PlaybackClock} with the position of the {@link MediaPlayer} and wake up the
+     * views that read it.
+     *
+     * @return the current position, in milliseconds
+     */
+    private int syncClock() {
+        final int currentPosition = mMediaPlayer.getCurrentPosition();
+        mPlaybackClock.sync(currentPosition, mDuration, mPlaying);
+        mHolder.arcSeekBar.requestRender();
+        mHolder.spectreView.requestRender();
+        return currentPosition;
+    }
+
     @Override
     public void onPrepared(MediaPlayer mp) {
-        mHolder.arcSeekBar.setMax(mMediaPlayer.getDuration());
+        mPrepared = true;
+        mDuration = mMediaPlayer.getDuration();
+        mHolder.arcSeekBar.setMax(mDuration);
+        run();
     }
 
     @Override
     public void onCompletion(MediaPlayer mp) {
         stopAlbumAnimation();
+        mPlaying = false;
         mMediaPlayer.seekTo(0);
-        mHolder.arcSeekBar.setProgress(0);
         updateButtonState();
+        mHandler.removeCallbacks(this);
+        run();
+    }
+
+    @Override
+    public void onSeekComplete(MediaPlayer mp) {
+        // The frames captured before the seek do not match the new position.
+        mSpectrumBus.reset();
+        syncClock();
     }
 
     @Override
     public void run() {
-        if (mMediaPlayer == null) {
+        if (mMediaPlayer == null || !mPrepared) {
             return;
         }
 
-        final int currentPosition = mMediaPlayer.getCurrentPosition();
-        final int remainingTime = mMediaPlayer.getDuration() - currentPosition;
-        mHolder.arcSeekBar.setProgress(currentPosition);
+        final int currentPosition = syncClock();
+        final int remainingTime = mDuration - currentPosition;
         mHolder.textProgress.setText(getTimeString(currentPosition));
         final String remaining = String.format(mContext.getString(R.string.player_remaining_time),
                 getTimeString(remainingTime));
         mHolder.textRemaining.setText(remaining);
 
-        if (currentPosition < mMediaPlayer.getDuration()) {
-            mHandler.postDelayed(this, 100);
+        if (mPlaying) {
+            // The next sync is at the next second of the position, when the texts change.
+            mHandler.postDelayed(this, CLOCK_SYNC_INTERVAL - currentPosition % 1000);
         }
     }
 
@@ -233,6 +334,7 @@ public class PlayerAdapter implements MediaPlayer.OnPreparedListener, MediaPlaye
      */
     public void onResume() {
         mHolder.arcSeekBar.resume();
+        mHolder.spectreView.resume();
     }
 
     /**
@@ -240,12 +342,15 @@ public class PlayerAdapter implements MediaPlayer.OnPreparedListener, MediaPlaye
      */
     public void onPause() {
         mHolder.arcSeekBar.pause();
+        mHolder.spectreView.pause();
     }
 
     /**
      * Method that must be called on destroy the activity.
      */
     public void onDestroy() {
+        mHandler.removeCallbacks(this);
+        mSpectrumCapture.stop();
         if (mMediaPlayer != null) {
             mMediaPlayer.reset();
             mMediaPlayer.stop();
@@ -293,6 +398,88 @@ public class PlayerAdapter implements MediaPlayer.OnPreparedListener, MediaPlaye
         } catch (IOException e) {
             e.printStackTrace();
         }
+        loadWaveformEnvelope(uri);
+        loadSpectrumTrack(uri);
+    }
+
+    /**
+     * Load the waveform envelope of the audio in background, computing it the first time the
+     * audio is played, and show it around the {@link ArcSeekBar}.
+     *
+     * @param uri audio uri
+     */
+    private void loadWaveformEnvelope(final Uri uri) {
+        new AsyncTask<Void, Void, WaveformEnvelope>() {
+            @Override
+            protected WaveformEnvelope doInBackground(Void... params) {
+                try {
+                    return mEnvelopeStore.load(uri, ArcSeekBar.ENVELOPE_SEGMENT_COUNT);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            }
+
+            @Override
+            protected void onPostExecute(WaveformEnvelope envelope) {
+                if (mMediaPlayer != null) {
+                    mHolder.arcSeekBar.setEnvelope(envelope);
+                }
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Load the precomputed spectrum of the audio in background, computing it the first time the
+     * audio is played, and show it in the {@link SpectreView}.
+     *
+     * @param uri audio uri
+     */
+    private void loadSpectrumTrack(final Uri uri) {
+        final int bandCount = mHolder.spectreView.getBarCount();
+        new AsyncTask<Void, Void, SpectrumTrack>() {
+            @Override
+            protected SpectrumTrack doInBackground(Void... params) {
+                try {
+                    return mSpectrumTrackStore.load(uri, bandCount);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            }
+
+            @Override
+            protected void onPostExecute(SpectrumTrack track) {
+                if (mMediaPlayer == null) {
+                    return;
+                }
+                if (track != null) {
+                    mHolder.spectreView.setSpectrumTrack(track);
+                } else {
+                    mCaptureSpectrum = true;
+                    startSpectrumCapture();
+                }
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Start publishing the spectrum of the audio output in the {@link SpectrumBus}, if there is
+     * no precomputed one. It may fail until the record audio permission is granted.
+     */
+    public void startSpectrumCapture() {
+        if (mCaptureSpectrum && mMediaPlayer != null && mSpectrumCapture.start()) {
+            mHolder.spectreView.setSpectrumBus(mSpectrumBus);
+        }
+    }
+
+    /**
+     * Get the bus with the spectrum of the audio output, which any visualizer can read.
+     *
+     * @return the spectrum bus
+     */
+    public SpectrumBus getSpectrumBus() {
+        return mSpectrumBus;
     }
 
     /**
@@ -310,6 +497,11 @@ public class PlayerAdapter implements MediaPlayer.OnPreparedListener, MediaPlaye
          */
         final ArcSeekBar arcSeekBar;
 
+        /**
+         * {@link SpectreView} with the spectrum of the audio.
+         */
+        final SpectreView spectreView;
+
         /**
          * {@link TextView} with the progress in minutes/second format.
          */
@@ -343,6 +535,7 @@ public class PlayerAdapter implements MediaPlayer.OnPreparedListener, MediaPlaye
         PlayerHolder(View view) {
             albumCover = (ImageView) view.findViewById(R.id.album_cover);
             arcSeekBar = (ArcSeekBar) view.findViewById(R.id.arc_seekbar);
+            spectreView = (SpectreView) view.findViewById(R.id.player_spectre);
             textProgress = (TextView) view.findViewById(R.id.text_progress);
             textRemaining = (TextView) view.findViewById(R.id.text_remaining);
             playPauseButton = (ImageButton) view.findViewById(R.id.player_button);
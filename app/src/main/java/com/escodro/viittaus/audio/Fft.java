@@ -0,0 +1,106 @@
+package com.escodro.viittaus.audio;
+
+/**
+ * In-place radix-2 Fast Fourier Transform of a fixed power-of-two size.
+ * <p/>
+ * The twiddle factors and the bit-reversal permutation are precomputed when the instance is
+ * created, so {@link #transform(float[], float[])} does not allocate.
+ */
+public class Fft {
+
+    /**
+     * Quantity of points of the transform.
+     */
+    private final int mSize;
+
+    /**
+     * Cosine of each twiddle factor angle.
+     */
+    private final float[] mCos;
+
+    /**
+     * Sine of each twiddle factor angle.
+     */
+    private final float[] mSin;
+
+    /**
+     * Bit-reversed index of each position.
+     */
+    private final int[] mBitReversed;
+
+    /**
+     * Create a new instance of {@link Fft}.
+     *
+     * @param size quantity of points, must be a power of two
+     */
+    public Fft(int size) {
+        if (size < 2 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        mSize = size;
+
+        final int halfSize = size / 2;
+        mCos = new float[halfSize];
+        mSin = new float[halfSize];
+        for (int i = 0; i < halfSize; i++) {
+            final double angle = 2 * Math.PI * i / size;
+            mCos[i] = (float) Math.cos(angle);
+            mSin[i] = (float) Math.sin(angle);
+        }
+
+        final int bits = Integer.numberOfTrailingZeros(size);
+        mBitReversed = new int[size];
+        for (int i = 0; i < size; i++) {
+            mBitReversed[i] = Integer.reverse(i) >>> (Integer.SIZE - bits);
+        }
+    }
+
+    /**
+     * Get the quantity of points of the transform.
+     *
+     * @return transform size
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Compute the forward transform in place.
+     *
+     * @param real real part of the input, replaced by the real part of the output
+     * @param imag imaginary part of the input, replaced by the imaginary part of the output
+     */
+    public void transform(float[] real, float[] imag) {
+        for (int i = 0; i < mSize; i++) {
+            final int j = mBitReversed[i];
+            if (j > i) {
+                float temp = real[i];
+                real[i] = real[j];
+                real[j] = temp;
+                temp = imag[i];
+                imag[i] = imag[j];
+                imag[j] = temp;
+            }
+        }
+
+        for (int half = 1; half < mSize; half <<= 1) {
+            final int step = mSize / (half * 2);
+            for (int start = 0; start < mSize; start += half * 2) {
+                for (int k = 0; k < half; k++) {
+                    final float cos = mCos[k * step];
+                    final float sin = mSin[k * step];
+                    final int even = start + k;
+                    final int odd = even + half;
+
+                    final float oddReal = real[odd] * cos + imag[odd] * sin;
+                    final float oddImag = imag[odd] * cos - real[odd] * sin;
+
+                    real[odd] = real[even] - oddReal;
+                    imag[odd] = imag[even] - oddImag;
+                    real[even] += oddReal;
+                    imag[even] += oddImag;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.escodro.viittaus.audio;
+
+/**
+ * Analyzer that converts mono PCM frames into logarithmic frequency bands.
+ * <p/>
+ * Each analysis applies a Hann window to the last {@link #getFftSize()} samples, computes their
+ * {@link Fft} and keeps the peak magnitude of the bins in each band. The bands are spaced
+ * logarithmically from {@link #MIN_FREQUENCY} to the Nyquist frequency, and are also available as
+ * volumes between 0 and 100, in the scale expected by
+ * {@link com.escodro.viittaus.view.SpectreView#add(int[], int, int)}.
+ * <p/>
+ * All the buffers are created with the analyzer, so analyzing a frame does not allocate. An
+ * instance must only be used by one thread at a time.
+ */
+public class SpectrumAnalyzer {
+
+    /**
+     * Lowest frequency of the first band, in Hz.
+     */
+    public static final float MIN_FREQUENCY = 40F;
+
+    /**
+     * Magnitude, in decibels relative to a full-scale sine, mapped to volume zero.
+     */
+    private static final float DB_FLOOR = -60F;
+
+    /**
+     * Highest volume, given to a full-scale sine.
+     */
+    private static final int MAX_VOLUME = 100;
+
+    /**
+     * Full scale of 16-bit PCM samples.
+     */
+    private static final float SHORT_FULL_SCALE = 32768F;
+
+    /**
+     * {@link Fft} used in the analysis.
+     */
+    private final Fft mFft;
+
+    /**
+     * Hann window coefficients.
+     */
+    private final float[] mWindow;
+
+    /**
+     * Real part of the FFT scratch buffer.
+     */
+    private final float[] mReal;
+
+    /**
+     * Imaginary part of the FFT scratch buffer.
+     */
+    private final float[] mImag;
+
+    /**
+     * First FFT bin of each band.
+     */
+    private final int[] mBandStart;
+
+    /**
+     * FFT bin after the last one of each band.
+     */
+    private final int[] mBandEnd;
+
+    /**
+     * Peak magnitude of each band, where 1 is a full-scale sine.
+     */
+    private final float[] mBands;
+
+    /**
+     * Volume of each band, between 0 and 100.
+     */
+    private final int[] mVolumes;
+
+    /**
+     * Sample rate the band bins were calculated for.
+     */
+    private int mSampleRate;
+
+    /**
+     * Create a new instance of {@link SpectrumAnalyzer}.
+     *
+     * @param fftSize   quantity of samples in each analysis, must be a power of two
+     * @param bandCount quantity of frequency bands
+     */
+    public SpectrumAnalyzer(int fftSize, int bandCount) {
+        mFft = new Fft(fftSize);
+
+        mWindow = new float[fftSize];
+        for (int i = 0; i < fftSize; i++) {
+            mWindow[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (fftSize - 1)));
+        }
+
+        mReal = new float[fftSize];
+        mImag = new float[fftSize];
+        mBandStart = new int[bandCount];
+        mBandEnd = new int[bandCount];
+        mBands = new float[bandCount];
+        mVolumes = new int[bandCount];
+    }
+
+    /**
+     * Analyze a frame of 16-bit PCM samples. If the frame is longer than the FFT size only its last
+     * samples are analyzed, if it is shorter it is padded with silence.
+     *
+     * @param samples    array with the samples
+     * @param offset     index of the first sample in the array
+     * @param length     quantity of samples
+     * @param sampleRate sample rate of the samples, in Hz
+     */
+    public void analyze(short[] samples, int offset, int length, int sampleRate) {
+        final int fftSize = mFft.getSize();
+        final int count = Math.min(length, fftSize);
+        final int start = offset + length - count;
+        for (int i = 0; i < count; i++) {
+            mReal[i] = samples[start + i] / SHORT_FULL_SCALE * mWindow[i];
+        }
+        analyze(count, sampleRate);
+    }
+
+    /**
+     * Analyze a frame of float PCM samples, between -1 and 1. If the frame is longer than the FFT
+     * size only its last samples are analyzed, if it is shorter it is padded with silence.
+     *
+     * @param samples    array with the samples
+     * @param offset     index of the first sample in the array
+     * @param length     quantity of samples
+     * @param sampleRate sample rate of the samples, in Hz
+     */
+    public void analyze(float[] samples, int offset, int length, int sampleRate) {
+        final int fftSize = mFft.getSize();
+        final int count = Math.min(length, fftSize);
+        final int start = offset + length - count;
+        for (int i = 0; i < count; i++) {
+            mReal[i] = samples[start + i] * mWindow[i];
+        }
+        analyze(count, sampleRate);
+    }
+
+    /**
+     * Pad the windowed samples, compute the FFT and reduce it to the bands.
+     *
+     * @param count      quantity of windowed samples in the real buffer
+     * @param sampleRate sample rate of the samples, in Hz
+     */
+    private void analyze(int count, int sampleRate) {
+        final int fftSize = mFft.getSize();
+        for (int i = count; i < fftSize; i++) {
+            mReal[i] = 0;
+        }
+        for (int i = 0; i < fftSize; i++) {
+            mImag[i] = 0;
+        }
+        if (sampleRate != mSampleRate) {
+            updateBandBins(sampleRate);
+        }
+
+        mFft.transform(mReal, mImag);
+
+        // A full-scale sine under a Hann window peaks at fftSize / 4.
+        final float scale = 4F / fftSize;
+        for (int band = 0; band < mBands.length; band++) {
+            float peak = 0;
+            for (int bin = mBandStart[band]; bin < mBandEnd[band]; bin++) {
+                final float power = mReal[bin] * mReal[bin] + mImag[bin] * mImag[bin];
+                peak = Math.max(peak, power);
+            }
+            final float magnitude = (float) Math.sqrt(peak) * scale;
+            mBands[band] = magnitude;
+            mVolumes[band] = toVolume(magnitude);
+        }
+    }
+
+    /**
+     * Calculate the FFT bins of each band for the sample rate.
+     *
+     * @param sampleRate sample rate, in Hz
+     */
+    private void updateBandBins(int sampleRate) {
+        mSampleRate = sampleRate;
+
+        final int fftSize = mFft.getSize();
+        final int bandCount = mBands.length;
+        final int lastBin = fftSize / 2;
+        final double maxFrequency = sampleRate / 2.0;
+        final double ratio = maxFrequency / MIN_FREQUENCY;
+
+        int previousEnd = 1;
+        for (int band = 0; band < bandCount; band++) {
+            final double upper = MIN_FREQUENCY * Math.pow(ratio, (band + 1.0) / bandCount);
+            final int start = Math.min(previousEnd, lastBin - 1);
+            final int end = (int) Math.round(upper * fftSize / sampleRate);
+            mBandStart[band] = start;
+            mBandEnd[band] = Math.min(lastBin, Math.max(start + 1, end));
+            previousEnd = mBandEnd[band];
+        }
+    }
+
+    /**
+     * Convert a band magnitude to a volume between 0 and 100 in a decibel scale.
+     *
+     * @param magnitude band magnitude, where 1 is a full-scale sine
+     *
+     * @return the volume
+     */
+    private int toVolume(float magnitude) {
+        if (magnitude <= 0) {
+            return 0;
+        }
+        final float decibels = (float) (20 * Math.log10(magnitude));
+        final int volume = Math.round((decibels - DB_FLOOR) / -DB_FLOOR * MAX_VOLUME);
+        return Math.max(0, Math.min(MAX_VOLUME, volume));
+    }
+
+    /**
+     * Get the quantity of samples in each analysis.
+     *
+     * @return the FFT size
+     */
+    public int getFftSize() {
+        return mFft.getSize();
+    }
+
+    /**
+     * Get the quantity of frequency bands.
+     *
+     * @return quantity of bands
+     */
+    public int getBandCount() {
+        return mBands.length;
+    }
+
+    /**
+     * Get the peak magnitude of each band in the last analysis, where 1 is a full-scale sine. The
+     * array is reused by the next analysis.
+     *
+     * @return band magnitudes
+     */
+    public float[] getBands() {
+        return mBands;
+    }
+
+    /**
+     * Get the volume of each band in the last analysis, between 0 and 100. The array is reused by
+     * the next analysis.
+     *
+     * @return band volumes
+     */
+    public int[] getVolumes() {
+        return mVolumes;
+    }
+}
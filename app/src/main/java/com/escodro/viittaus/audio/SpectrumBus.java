@@ -0,0 +1,232 @@
+package com.escodro.viittaus.audio;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded bus of spectrum frames, each stamped with the playback position of its audio, from one
+ * producer to any number of {@link Reader readers}.
+ * <p/>
+ * The frames are written in a ring of slots, each with a sequence stamp that is cleared while the
+ * slot is written, so a reader detects and discards a frame overwritten during its copy. The
+ * producer never waits: a reader that falls behind skips to the newest frame, and the frames it
+ * missed are lost. A reader only takes frames up to the playback position it is shown at, so the
+ * visuals do not run ahead of the audio, and {@link #reset()} discards the frames published before
+ * a seek.
+ */
+public class SpectrumBus {
+
+    /**
+     * Stamp of a slot being written or never written.
+     */
+    private static final long NO_SEQUENCE = -1;
+
+    /**
+     * Quantity of bands of each frame.
+     */
+    private final int mBandCount;
+
+    /**
+     * Quantity of slots in the ring.
+     */
+    private final int mCapacity;
+
+    /**
+     * Sequence of the frame in each slot, or {@link #NO_SEQUENCE}.
+     */
+    private final AtomicLongArray mStamps;
+
+    /**
+     * Playback position of the frame in each slot, in milliseconds.
+     */
+    private final AtomicLongArray mPositions;
+
+    /**
+     * Band volumes of the frame in each slot.
+     */
+    private final AtomicIntegerArray mVolumes;
+
+    /**
+     * Sequence of the newest frame, or {@link #NO_SEQUENCE} if none was published.
+     */
+    private volatile long mPublished = NO_SEQUENCE;
+
+    /**
+     * First sequence published after the last reset.
+     */
+    private volatile long mResetSequence;
+
+    /**
+     * Create a new instance of {@link SpectrumBus}.
+     *
+     * @param bandCount quantity of bands of each frame
+     * @param capacity  quantity of frames kept for the readers
+     */
+    public SpectrumBus(int bandCount, int capacity) {
+        mBandCount = bandCount;
+        mCapacity = capacity;
+        mStamps = new AtomicLongArray(capacity);
+        mPositions = new AtomicLongArray(capacity);
+        mVolumes = new AtomicIntegerArray(capacity * bandCount);
+        for (int slot = 0; slot < capacity; slot++) {
+            mStamps.set(slot, NO_SEQUENCE);
+        }
+    }
+
+    /**
+     * Publish a frame, replacing the oldest one. Only one thread may publish frames, and it never
+     * waits for the readers.
+     *
+     * @param volumes        array with the volume of each band
+     * @param offset         index of the first volume in the array
+     * @param positionMillis playback position of the audio of the frame, in milliseconds
+     */
+    public void publish(int[] volumes, int offset, long positionMillis) {
+        final long sequence = mPublished + 1;
+        final int slot = (int) (sequence % mCapacity);
+        mStamps.set(slot, NO_SEQUENCE);
+        final int start = slot * mBandCount;
+        for (int band = 0; band < mBandCount; band++) {
+            mVolumes.lazySet(start + band, volumes[offset + band]);
+        }
+        mPositions.lazySet(slot, positionMillis);
+        mStamps.set(slot, sequence);
+        mPublished = sequence;
+    }
+
+    /**
+     * Discard the frames published so far, as after a seek or a track change. Called by the
+     * producer.
+     */
+    public void reset() {
+        mResetSequence = mPublished + 1;
+    }
+
+    /**
+     * Create a reader of the frames published from now on.
+     *
+     * @return a new reader
+     */
+    public Reader newReader() {
+        return new Reader();
+    }
+
+    /**
+     * Get the quantity of bands of each frame.
+     *
+     * @return quantity of bands
+     */
+    public int getBandCount() {
+        return mBandCount;
+    }
+
+    /**
+     * Reader of a {@link SpectrumBus}, used by a single thread. Reading does not allocate.
+     */
+    public class Reader {
+
+        /**
+         * Band volumes of the last frame read.
+         */
+        private final int[] mFrame = new int[mBandCount];
+
+        /**
+         * Sequence of the last frame read.
+         */
+        private long mSequence = mPublished;
+
+        /**
+         * Playback position of the last frame read, in milliseconds.
+         */
+        private long mPosition;
+
+        /**
+         * Reset sequence seen by the last read.
+         */
+        private long mSeenReset = mResetSequence;
+
+        /**
+         * Create a new instance of {@link Reader}.
+         */
+        Reader() {
+        }
+
+        /**
+         * Read the newest frame not ahead of the playback position, skipping the older ones.
+         *
+         * @param positionMillis playback position the frame is shown at, in milliseconds, or
+         *                       {@link Long#MAX_VALUE} to read the newest frame
+         *
+         * @return true if a new frame was read, false if there is none
+         */
+        public boolean read(long positionMillis) {
+            final long newest = mPublished;
+            final long oldest = Math.max(Math.max(mSequence + 1, mResetSequence),
+                    newest - mCapacity + 1);
+            for (long sequence = newest; sequence >= oldest; sequence--) {
+                final int slot = (int) (sequence % mCapacity);
+                if (mStamps.get(slot) != sequence) {
+                    continue;
+                }
+                final long position = mPositions.get(slot);
+                if (position > positionMillis) {
+                    continue;
+                }
+                final int start = slot * mBandCount;
+                for (int band = 0; band < mBandCount; band++) {
+                    mFrame[band] = mVolumes.get(start + band);
+                }
+                if (mStamps.get(slot) != sequence) {
+                    // Overwritten by the producer during the copy, so older ones are gone too.
+                    return false;
+                }
+                mSequence = sequence;
+                mPosition = position;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Get if the bus was reset since the last call, in which case the frames shown must be
+         * cleared.
+         *
+         * @return true if the bus was reset
+         */
+        public boolean consumeReset() {
+            final long reset = mResetSequence;
+            if (reset == mSeenReset) {
+                return false;
+            }
+            mSeenReset = reset;
+            return true;
+        }
+
+        /**
+         * Get the bus read.
+         *
+         * @return the bus
+         */
+        public SpectrumBus getBus() {
+            return SpectrumBus.this;
+        }
+
+        /**
+         * Get the band volumes of the last frame read. The array is reused by the next read.
+         *
+         * @return band volumes
+         */
+        public int[] getFrame() {
+            return mFrame;
+        }
+
+        /**
+         * Get the playback position of the last frame read.
+         *
+         * @return position in milliseconds
+         */
+        public long getPosition() {
+            return mPosition;
+        }
+    }
+}
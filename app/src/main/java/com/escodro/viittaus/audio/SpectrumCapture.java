@@ -0,0 +1,136 @@
+package com.escodro.viittaus.audio;
+
+import android.media.MediaPlayer;
+import android.media.audiofx.Visualizer;
+
+import com.escodro.viittaus.time.PlaybackClock;
+
+/**
+ * Producer of a {@link SpectrumBus} that analyzes the audio output of a {@link MediaPlayer}.
+ * <p/>
+ * The waveform captured by a {@link Visualizer} is analyzed by a {@link SpectrumAnalyzer} and
+ * published stamped with the position of a {@link PlaybackClock}, so capturing does not query the
+ * player. Capturing the output requires the record audio permission, without it {@link #start()}
+ * fails and nothing is published.
+ */
+public class SpectrumCapture implements Visualizer.OnDataCaptureListener {
+
+    /**
+     * Largest capture size requested, in samples.
+     */
+    private static final int MAX_CAPTURE_SIZE = 1024;
+
+    /**
+     * Millihertz in one hertz, the unit of the {@link Visualizer} sampling rate.
+     */
+    private static final int MILLIHERTZ_PER_HERTZ = 1000;
+
+    /**
+     * Center and full scale of the unsigned 8-bit waveform.
+     */
+    private static final float WAVEFORM_FULL_SCALE = 128F;
+
+    /**
+     * Player whose output is captured.
+     */
+    private final MediaPlayer mMediaPlayer;
+
+    /**
+     * Clock with the playback position the frames are stamped with.
+     */
+    private final PlaybackClock mPlaybackClock;
+
+    /**
+     * Bus the frames are published to.
+     */
+    private final SpectrumBus mBus;
+
+    /**
+     * {@link Visualizer} capturing the output, or null while stopped.
+     */
+    private Visualizer mVisualizer;
+
+    /**
+     * Analyzer of the captured waveform.
+     */
+    private SpectrumAnalyzer mAnalyzer;
+
+    /**
+     * Captured waveform, between -1 and 1.
+     */
+    private float[] mSamples;
+
+    /**
+     * Sampling rate of the captured waveform, in Hz.
+     */
+    private int mSampleRate;
+
+    /**
+     * Create a new instance of {@link SpectrumCapture}.
+     *
+     * @param mediaPlayer   player whose output is captured
+     * @param playbackClock clock with the playback position of the player
+     * @param bus           bus the frames are published to
+     */
+    public SpectrumCapture(MediaPlayer mediaPlayer, PlaybackClock playbackClock,
+                           SpectrumBus bus) {
+        mMediaPlayer = mediaPlayer;
+        mPlaybackClock = playbackClock;
+        mBus = bus;
+    }
+
+    /**
+     * Start capturing the output of the player. Callbacks come in the thread that called this
+     * method, if it has a looper, or in the main thread.
+     *
+     * @return true if the capture started, false if it is not allowed or not available
+     */
+    public boolean start() {
+        if (mVisualizer != null) {
+            return true;
+        }
+        try {
+            final Visualizer visualizer = new Visualizer(mMediaPlayer.getAudioSessionId());
+            final int captureSize =
+                    Math.min(MAX_CAPTURE_SIZE, Visualizer.getCaptureSizeRange()[1]);
+            visualizer.setCaptureSize(captureSize);
+            mSampleRate = visualizer.getSamplingRate() / MILLIHERTZ_PER_HERTZ;
+            mAnalyzer = new SpectrumAnalyzer(captureSize, mBus.getBandCount());
+            mSamples = new float[captureSize];
+            visualizer.setDataCaptureListener(this, Visualizer.getMaxCaptureRate(), true, false);
+            visualizer.setEnabled(true);
+            mVisualizer = visualizer;
+            return true;
+        } catch (RuntimeException e) {
+            // Thrown without the record audio permission or when the effect is not available.
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Stop capturing the output of the player.
+     */
+    public void stop() {
+        if (mVisualizer != null) {
+            mVisualizer.setEnabled(false);
+            mVisualizer.release();
+            mVisualizer = null;
+        }
+    }
+
+    @Override
+    public void onWaveFormDataCapture(Visualizer visualizer, byte[] waveform, int samplingRate) {
+        final int length = Math.min(waveform.length, mSamples.length);
+        for (int i = 0; i < length; i++) {
+            mSamples[i] = ((waveform[i] & 0xFF) - WAVEFORM_FULL_SCALE) / WAVEFORM_FULL_SCALE;
+        }
+        mAnalyzer.analyze(mSamples, 0, length, mSampleRate);
+        mBus.publish(mAnalyzer.getVolumes(), 0, mPlaybackClock.getPositionMillis());
+    }
+
+    @Override
+    public void onFftDataCapture(Visualizer visualizer, byte[] fft, int samplingRate) {
+        // Only the waveform is captured, to be analyzed in the bands of the bus.
+    }
+}
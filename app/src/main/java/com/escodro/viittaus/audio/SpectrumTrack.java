@@ -0,0 +1,266 @@
+package com.escodro.viittaus.audio;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Spectrum of a whole track, computed once and read from a memory-mapped file during playback.
+ * <p/>
+ * The file has a {@link #HEADER_SIZE} bytes header, followed by one frame for each
+ * {@code hopSize} samples of the track, with the volume of each band in one byte. The header has
+ * the format version, the {@link TrackIdentity} of the source and the analysis parameters, so a
+ * file is only used while it matches the track and the analysis requested, and is recomputed
+ * otherwise. Reading a frame is a copy from the mapped buffer, with no decoding or FFT.
+ */
+public class SpectrumTrack {
+
+    /**
+     * Magic number at the start of the file, "VSPT".
+     */
+    private static final int MAGIC = 0x56535054;
+
+    /**
+     * Version of the file format, incremented when the format or the analysis changes.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the header, in bytes.
+     */
+    private static final int HEADER_SIZE = 52;
+
+    /**
+     * Offset of the frame count in the header.
+     */
+    private static final int FRAME_COUNT_OFFSET = HEADER_SIZE - 4;
+
+    /**
+     * Suffix of the file written while the spectrum is computed.
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Mapped file, with the header followed by the frames.
+     */
+    private final MappedByteBuffer mBuffer;
+
+    /**
+     * Sample rate of the track, in Hz.
+     */
+    private final int mSampleRate;
+
+    /**
+     * Quantity of samples between two frames.
+     */
+    private final int mHopSize;
+
+    /**
+     * Quantity of bands of each frame.
+     */
+    private final int mBandCount;
+
+    /**
+     * Quantity of frames.
+     */
+    private final int mFrameCount;
+
+    /**
+     * Create a new instance of {@link SpectrumTrack}.
+     *
+     * @param buffer     mapped file
+     * @param sampleRate sample rate of the track, in Hz
+     * @param hopSize    quantity of samples between two frames
+     * @param bandCount  quantity of bands of each frame
+     * @param frameCount quantity of frames
+     */
+    private SpectrumTrack(MappedByteBuffer buffer, int sampleRate, int hopSize, int bandCount,
+                          int frameCount) {
+        mBuffer = buffer;
+        mSampleRate = sampleRate;
+        mHopSize = hopSize;
+        mBandCount = bandCount;
+        mFrameCount = frameCount;
+    }
+
+    /**
+     * Map a spectrum file, if it was computed from the track with the same analysis.
+     *
+     * @param file      spectrum file
+     * @param identity  identity of the track
+     * @param fftSize   quantity of samples in each analysis
+     * @param bandCount quantity of bands
+     *
+     * @return the spectrum, or null if the file does not exist or must be recomputed
+     *
+     * @throws IOException if the file can not be read
+     */
+    public static SpectrumTrack open(File file, TrackIdentity identity, int fftSize,
+                                     int bandCount) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = input.getChannel();
+            final MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC
+                    || buffer.getInt() != VERSION
+                    || buffer.getLong() != identity.getUriHash()
+                    || buffer.getLong() != identity.getSize()
+                    || buffer.getLong() != identity.getModified()) {
+                return null;
+            }
+            final int sampleRate = buffer.getInt();
+            final int hopSize = buffer.getInt();
+            final int fileFftSize = buffer.getInt();
+            final int fileBandCount = buffer.getInt();
+            final int frameCount = buffer.getInt();
+            if (fileFftSize != fftSize || fileBandCount != bandCount || sampleRate <= 0
+                    || hopSize <= 0 || frameCount <= 0
+                    || channel.size() != HEADER_SIZE + (long) frameCount * bandCount) {
+                return null;
+            }
+            return new SpectrumTrack(buffer, sampleRate, hopSize, bandCount, frameCount);
+        } finally {
+            // The mapping stays valid after the file is closed.
+            input.close();
+        }
+    }
+
+    /**
+     * Compute the spectrum of a track and write it to a file, replacing the existing one. The
+     * track is decoded and analyzed in chunks, so the memory used does not depend on its length.
+     *
+     * @param decoder   decoder of the track
+     * @param identity  identity of the track
+     * @param file      spectrum file
+     * @param fftSize   quantity of samples in each analysis, must be a power of two
+     * @param hopSize   quantity of samples between two frames, not greater than the FFT size
+     * @param bandCount quantity of bands
+     *
+     * @throws IOException if the track can not be decoded or the file can not be written
+     */
+    public static void compute(WavDecoder decoder, TrackIdentity identity, File file,
+                               int fftSize, int hopSize, int bandCount) throws IOException {
+        final SpectrumAnalyzer analyzer = new SpectrumAnalyzer(fftSize, bandCount);
+        final float[] samples = new float[fftSize];
+        final int sampleRate = decoder.getSampleRate();
+        final File temporary = new File(file.getPath() + TEMPORARY_SUFFIX);
+
+        int frameCount = 0;
+        final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(identity.getUriHash());
+            output.writeLong(identity.getSize());
+            output.writeLong(identity.getModified());
+            output.writeInt(sampleRate);
+            output.writeInt(hopSize);
+            output.writeInt(fftSize);
+            output.writeInt(bandCount);
+            output.writeInt(0);
+
+            boolean ended = false;
+            while (!ended) {
+                // Keep the last samples of the previous window and read a hop of new ones.
+                System.arraycopy(samples, hopSize, samples, 0, fftSize - hopSize);
+                int filled = fftSize - hopSize;
+                while (filled < fftSize) {
+                    final int read = decoder.read(samples, filled, fftSize - filled);
+                    if (read < 0) {
+                        ended = true;
+                        break;
+                    }
+                    filled += read;
+                }
+                if (filled == fftSize - hopSize) {
+                    break;
+                }
+                for (int i = filled; i < fftSize; i++) {
+                    samples[i] = 0;
+                }
+
+                analyzer.analyze(samples, 0, fftSize, sampleRate);
+                final int[] volumes = analyzer.getVolumes();
+                for (int band = 0; band < bandCount; band++) {
+                    output.writeByte(volumes[band]);
+                }
+                frameCount++;
+            }
+        } finally {
+            output.close();
+        }
+
+        final RandomAccessFile header = new RandomAccessFile(temporary, "rw");
+        try {
+            header.seek(FRAME_COUNT_OFFSET);
+            header.writeInt(frameCount);
+        } finally {
+            header.close();
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Could not write " + file);
+        }
+    }
+
+    /**
+     * Get the frame shown at a playback position.
+     *
+     * @param positionMillis playback position, in milliseconds
+     *
+     * @return index of the frame, clamped to the frames of the track
+     */
+    public int getFrameIndex(long positionMillis) {
+        final long frame = positionMillis * mSampleRate / (1000L * mHopSize);
+        return (int) Math.max(0, Math.min(mFrameCount - 1, frame));
+    }
+
+    /**
+     * Copy the band volumes of a frame. Can be called from any thread, it does not allocate.
+     *
+     * @param frame   index of the frame
+     * @param volumes array to receive the volume of each band, between 0 and 100
+     */
+    public void readFrame(int frame, int[] volumes) {
+        final int start = HEADER_SIZE + frame * mBandCount;
+        for (int band = 0; band < mBandCount; band++) {
+            volumes[band] = mBuffer.get(start + band);
+        }
+    }
+
+    /**
+     * Get the quantity of bands of each frame.
+     *
+     * @return quantity of bands
+     */
+    public int getBandCount() {
+        return mBandCount;
+    }
+
+    /**
+     * Get the quantity of frames.
+     *
+     * @return quantity of frames
+     */
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Get the duration of the track.
+     *
+     * @return duration, in milliseconds
+     */
+    public long getDurationMillis() {
+        return (long) mFrameCount * mHopSize * 1000L / mSampleRate;
+    }
+}
@@ -0,0 +1,74 @@
+package com.escodro.viittaus.audio;
+
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Store of the {@link SpectrumTrack} of each track, kept in the cache directory of the
+ * application.
+ * <p/>
+ * The spectrum of a track is computed the first time it is loaded, and only mapped in the next
+ * times, until the track changes. Loading may decode a whole track, so it must not be called from
+ * the main thread.
+ */
+public class SpectrumTrackStore extends TrackCache<SpectrumTrack> {
+
+    /**
+     * Quantity of samples in each analysis.
+     */
+    public static final int FFT_SIZE = 1024;
+
+    /**
+     * Quantity of samples between two frames, about 23 milliseconds at 44100 Hz.
+     */
+    public static final int HOP_SIZE = 1024;
+
+    /**
+     * Name of the directory with the spectrum files, in the cache directory.
+     */
+    private static final String DIRECTORY = "spectrum";
+
+    /**
+     * Extension of the spectrum files.
+     */
+    private static final String EXTENSION = ".spt";
+
+    /**
+     * Create a new instance of {@link SpectrumTrackStore}.
+     *
+     * @param context application context
+     */
+    public SpectrumTrackStore(Context context) {
+        super(context, DIRECTORY, EXTENSION);
+    }
+
+    /**
+     * Load the spectrum of a track, computing it if it is not stored or the track changed.
+     *
+     * @param uri       uri of a WAV track
+     * @param bandCount quantity of bands
+     *
+     * @return the spectrum of the track
+     *
+     * @throws IOException if the track can not be decoded or the spectrum can not be stored
+     */
+    public SpectrumTrack load(Uri uri, int bandCount) throws IOException {
+        return loadTrack(uri, bandCount);
+    }
+
+    @Override
+    protected SpectrumTrack open(File file, TrackIdentity identity, int bandCount)
+            throws IOException {
+        return SpectrumTrack.open(file, identity, FFT_SIZE, bandCount);
+    }
+
+    @Override
+    protected SpectrumTrack compute(WavDecoder decoder, TrackIdentity identity, File file,
+                                    int bandCount) throws IOException {
+        SpectrumTrack.compute(decoder, identity, file, FFT_SIZE, HOP_SIZE, bandCount);
+        return SpectrumTrack.open(file, identity, FFT_SIZE, bandCount);
+    }
+}
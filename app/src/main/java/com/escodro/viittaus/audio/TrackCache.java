@@ -0,0 +1,111 @@
+package com.escodro.viittaus.audio;
+
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Cache of data computed from each track, kept in a directory of the cache directory of the
+ * application.
+ * <p/>
+ * The data of a track is stored in a file named by the {@link TrackIdentity} of the track. It is
+ * computed the first time the track is loaded, by decoding the track with a {@link WavDecoder},
+ * and only read from its file in the next times, until the track changes. Loading may decode a
+ * whole track, so it must not be called from the main thread.
+ *
+ * @param <T> type of the data computed from a track
+ */
+public abstract class TrackCache<T> {
+
+    /**
+     * Application context.
+     */
+    private final Context mContext;
+
+    /**
+     * Directory with the files of the cache.
+     */
+    private final File mDirectory;
+
+    /**
+     * Extension of the files of the cache.
+     */
+    private final String mExtension;
+
+    /**
+     * Create a new instance of {@link TrackCache}.
+     *
+     * @param context   application context
+     * @param directory name of the directory with the files, in the cache directory
+     * @param extension extension of the files
+     */
+    protected TrackCache(Context context, String directory, String extension) {
+        mContext = context.getApplicationContext();
+        mDirectory = new File(mContext.getCacheDir(), directory);
+        mExtension = extension;
+    }
+
+    /**
+     * Load the data of a track, computing it if it is not stored or the track changed.
+     *
+     * @param uri        uri of a WAV track
+     * @param resolution quantity of values computed for the track, such as bands or segments
+     *
+     * @return the data of the track
+     *
+     * @throws IOException if the track can not be decoded or the data can not be stored
+     */
+    protected final T loadTrack(Uri uri, int resolution) throws IOException {
+        final TrackIdentity identity = TrackIdentity.fromUri(mContext, uri);
+        final File file = new File(mDirectory, identity.getFileName(mExtension));
+        final T stored = open(file, identity, resolution);
+        if (stored != null) {
+            return stored;
+        }
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Could not create " + mDirectory);
+        }
+        final InputStream input = mContext.getContentResolver().openInputStream(uri);
+        if (input == null) {
+            throw new IOException("Could not open " + uri);
+        }
+        try {
+            return compute(new WavDecoder(input), identity, file, resolution);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Read the stored data of a track.
+     *
+     * @param file       file of the track
+     * @param identity   identity of the track
+     * @param resolution quantity of values computed for the track
+     *
+     * @return the data, or null if the file does not exist or must be computed again
+     *
+     * @throws IOException if the file can not be read
+     */
+    protected abstract T open(File file, TrackIdentity identity, int resolution)
+            throws IOException;
+
+    /**
+     * Compute the data of a track and store it in its file.
+     *
+     * @param decoder    decoder of the track
+     * @param identity   identity of the track
+     * @param file       file of the track
+     * @param resolution quantity of values computed for the track
+     *
+     * @return the data of the track
+     *
+     * @throws IOException if the track can not be decoded or the data can not be stored
+     */
+    protected abstract T compute(WavDecoder decoder, TrackIdentity identity, File file,
+                                 int resolution) throws IOException;
+}
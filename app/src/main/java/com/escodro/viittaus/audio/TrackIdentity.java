@@ -0,0 +1,149 @@
+package com.escodro.viittaus.audio;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Identity of an audio track, used to key the data computed from it.
+ * <p/>
+ * The track is identified by its uri, its size in bytes and its modification time, so the data
+ * computed from it is recomputed when the source changes. The modification time of files is the
+ * file time, and the one of resources is the time the application was last updated.
+ */
+public class TrackIdentity {
+
+    /**
+     * Offset basis of the 64-bit FNV-1a hash.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+    /**
+     * Prime of the 64-bit FNV-1a hash.
+     */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * Uri of the track.
+     */
+    private final String mUri;
+
+    /**
+     * Hash of the uri.
+     */
+    private final long mUriHash;
+
+    /**
+     * Size of the track, in bytes, or -1 if unknown.
+     */
+    private final long mSize;
+
+    /**
+     * Modification time of the track, in milliseconds, or zero if unknown.
+     */
+    private final long mModified;
+
+    /**
+     * Create a new instance of {@link TrackIdentity}.
+     *
+     * @param uri      uri of the track
+     * @param size     size of the track, in bytes, or -1 if unknown
+     * @param modified modification time of the track, in milliseconds, or zero if unknown
+     */
+    public TrackIdentity(String uri, long size, long modified) {
+        mUri = uri;
+        mSize = size;
+        mModified = modified;
+
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < uri.length(); i++) {
+            hash = (hash ^ uri.charAt(i)) * FNV_PRIME;
+        }
+        mUriHash = hash;
+    }
+
+    /**
+     * Create the identity of the track in the uri, reading its size and modification time.
+     *
+     * @param context application context
+     * @param uri     uri of the track
+     *
+     * @return the track identity
+     *
+     * @throws IOException if the track can not be opened
+     */
+    public static TrackIdentity fromUri(Context context, Uri uri) throws IOException {
+        final AssetFileDescriptor descriptor =
+                context.getContentResolver().openAssetFileDescriptor(uri, "r");
+        long size = -1;
+        if (descriptor != null) {
+            size = descriptor.getLength();
+            descriptor.close();
+        }
+
+        long modified = 0;
+        if ("file".equals(uri.getScheme())) {
+            modified = new File(uri.getPath()).lastModified();
+        } else if (ContentResolver.SCHEME_ANDROID_RESOURCE.equals(uri.getScheme())) {
+            try {
+                modified = context.getPackageManager()
+                        .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
+        return new TrackIdentity(uri.toString(), size, modified);
+    }
+
+    /**
+     * Get the uri of the track.
+     *
+     * @return the uri
+     */
+    public String getUri() {
+        return mUri;
+    }
+
+    /**
+     * Get the 64-bit hash of the uri, stored in the headers of the computed files.
+     *
+     * @return the uri hash
+     */
+    public long getUriHash() {
+        return mUriHash;
+    }
+
+    /**
+     * Get the size of the track.
+     *
+     * @return size in bytes, or -1 if unknown
+     */
+    public long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Get the modification time of the track.
+     *
+     * @return modification time in milliseconds, or zero if unknown
+     */
+    public long getModified() {
+        return mModified;
+    }
+
+    /**
+     * Get the name of the file with the data computed from the track.
+     *
+     * @param extension extension of the file, with the dot
+     *
+     * @return the file name
+     */
+    public String getFileName(String extension) {
+        return Long.toHexString(mUriHash) + extension;
+    }
+}
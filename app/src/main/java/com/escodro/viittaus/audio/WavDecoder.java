@@ -0,0 +1,287 @@
+package com.escodro.viittaus.audio;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming decoder of WAV files with 8 or 16-bit PCM samples.
+ * <p/>
+ * The header is parsed when the decoder is created, and the samples are read in chunks of at most
+ * {@link #CHUNK_FRAMES} frames and mixed down to mono floats between -1 and 1, so a whole track
+ * is decoded with bounded memory and without allocating after the decoder is created.
+ */
+public class WavDecoder implements Closeable {
+
+    /**
+     * Quantity of frames read from the stream at a time.
+     */
+    private static final int CHUNK_FRAMES = 4096;
+
+    /**
+     * Format code of integer PCM samples.
+     */
+    private static final int FORMAT_PCM = 1;
+
+    /**
+     * Full scale of 16-bit PCM samples.
+     */
+    private static final float SHORT_FULL_SCALE = 32768F;
+
+    /**
+     * Full scale of 8-bit PCM samples, which are unsigned around this value.
+     */
+    private static final float BYTE_FULL_SCALE = 128F;
+
+    /**
+     * Stream with the WAV file.
+     */
+    private final InputStream mInput;
+
+    /**
+     * Sample rate, in Hz.
+     */
+    private int mSampleRate;
+
+    /**
+     * Quantity of channels.
+     */
+    private int mChannelCount;
+
+    /**
+     * Bits of each sample, 8 or 16.
+     */
+    private int mBitsPerSample;
+
+    /**
+     * Bytes of each frame, with one sample of each channel.
+     */
+    private int mFrameSize;
+
+    /**
+     * Quantity of frames in the data chunk.
+     */
+    private long mFrameCount;
+
+    /**
+     * Bytes of the data chunk not read yet.
+     */
+    private long mRemainingBytes;
+
+    /**
+     * Buffer the chunks are read into.
+     */
+    private final byte[] mChunk;
+
+    /**
+     * Create a new instance of {@link WavDecoder}, reading the header of the file.
+     *
+     * @param input stream with the WAV file, positioned at its start
+     *
+     * @throws IOException if the stream can not be read or is not a supported WAV file
+     */
+    public WavDecoder(InputStream input) throws IOException {
+        mInput = input;
+        readHeader();
+        mChunk = new byte[CHUNK_FRAMES * mFrameSize];
+    }
+
+    /**
+     * Read the RIFF chunks up to the start of the data chunk.
+     *
+     * @throws IOException if the stream can not be read or is not a supported WAV file
+     */
+    private void readHeader() throws IOException {
+        final byte[] header = new byte[16];
+        readFully(header, 12);
+        if (!hasId(header, 0, "RIFF") || !hasId(header, 8, "WAVE")) {
+            throw new IOException("Not a WAV file");
+        }
+
+        boolean hasFormat = false;
+        while (true) {
+            readFully(header, 8);
+            final long size = readInt(header, 4) & 0xFFFFFFFFL;
+            if (hasId(header, 0, "fmt ")) {
+                readFully(header, 16);
+                final int format = readShort(header, 0);
+                mChannelCount = readShort(header, 2);
+                mSampleRate = readInt(header, 4);
+                mFrameSize = readShort(header, 12);
+                mBitsPerSample = readShort(header, 14);
+                if (format != FORMAT_PCM || (mBitsPerSample != 8 && mBitsPerSample != 16)
+                        || mChannelCount < 1
+                        || mFrameSize != mChannelCount * mBitsPerSample / 8) {
+                    throw new IOException("Unsupported WAV format: " + format + ", "
+                            + mBitsPerSample + " bits");
+                }
+                skip(size - 16 + (size & 1));
+                hasFormat = true;
+            } else if (hasId(header, 0, "data")) {
+                if (!hasFormat) {
+                    throw new IOException("WAV data before the format chunk");
+                }
+                mRemainingBytes = size - size % mFrameSize;
+                mFrameCount = mRemainingBytes / mFrameSize;
+                return;
+            } else {
+                // The chunks have an even size, padded if needed.
+                skip(size + (size & 1));
+            }
+        }
+    }
+
+    /**
+     * Read the next frames, mixed down to mono.
+     *
+     * @param samples array to receive the samples, between -1 and 1
+     * @param offset  index of the first sample in the array
+     * @param length  maximum quantity of samples
+     *
+     * @return quantity of samples read, or -1 at the end of the data
+     *
+     * @throws IOException if the stream can not be read
+     */
+    public int read(float[] samples, int offset, int length) throws IOException {
+        if (mRemainingBytes == 0) {
+            return -1;
+        }
+        final int frames = (int) Math.min(Math.min(length, CHUNK_FRAMES),
+                mRemainingBytes / mFrameSize);
+        final int bytes = frames * mFrameSize;
+        readFully(mChunk, bytes);
+        mRemainingBytes -= bytes;
+
+        final int channels = mChannelCount;
+        int index = 0;
+        for (int i = 0; i < frames; i++) {
+            float sum = 0;
+            for (int channel = 0; channel < channels; channel++) {
+                if (mBitsPerSample == 16) {
+                    sum += (short) readShort(mChunk, index) / SHORT_FULL_SCALE;
+                    index += 2;
+                } else {
+                    sum += ((mChunk[index] & 0xFF) - BYTE_FULL_SCALE) / BYTE_FULL_SCALE;
+                    index++;
+                }
+            }
+            samples[offset + i] = sum / channels;
+        }
+        return frames;
+    }
+
+    /**
+     * Get the sample rate.
+     *
+     * @return sample rate, in Hz
+     */
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    /**
+     * Get the quantity of channels in the file, before the mix down.
+     *
+     * @return quantity of channels
+     */
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    /**
+     * Get the quantity of frames in the file.
+     *
+     * @return quantity of frames
+     */
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInput.close();
+    }
+
+    /**
+     * Read exactly the quantity of bytes from the stream.
+     *
+     * @param buffer array to receive the bytes
+     * @param length quantity of bytes
+     *
+     * @throws IOException if the stream ends before or can not be read
+     */
+    private void readFully(byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            final int count = mInput.read(buffer, read, length - read);
+            if (count < 0) {
+                throw new EOFException("Truncated WAV file");
+            }
+            read += count;
+        }
+    }
+
+    /**
+     * Skip bytes of the stream.
+     *
+     * @param count quantity of bytes
+     *
+     * @throws IOException if the stream ends before or can not be read
+     */
+    private void skip(long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            final long skipped = mInput.skip(remaining);
+            if (skipped > 0) {
+                remaining -= skipped;
+            } else if (mInput.read() < 0) {
+                throw new EOFException("Truncated WAV file");
+            } else {
+                remaining--;
+            }
+        }
+    }
+
+    /**
+     * Get if the bytes at the index are the chunk id.
+     *
+     * @param buffer array with the bytes
+     * @param index  index of the first byte
+     * @param id     four characters chunk id
+     *
+     * @return true if the bytes are the id
+     */
+    private static boolean hasId(byte[] buffer, int index, String id) {
+        for (int i = 0; i < 4; i++) {
+            if (buffer[index + i] != id.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read an unsigned little-endian 16-bit value.
+     *
+     * @param buffer array with the bytes
+     * @param index  index of the first byte
+     *
+     * @return the value
+     */
+    private static int readShort(byte[] buffer, int index) {
+        return (buffer[index] & 0xFF) | (buffer[index + 1] & 0xFF) << 8;
+    }
+
+    /**
+     * Read a little-endian 32-bit value.
+     *
+     * @param buffer array with the bytes
+     * @param index  index of the first byte
+     *
+     * @return the value
+     */
+    private static int readInt(byte[] buffer, int index) {
+        return readShort(buffer, index) | readShort(buffer, index + 2) << 16;
+    }
+}
@@ -0,0 +1,224 @@
+package com.escodro.viittaus.audio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Amplitude envelope of a track, with the lowest and the highest sample of each segment of the
+ * track, between -1 and 1.
+ * <p/>
+ * The envelope is computed by streaming the decoded track in chunks, so the memory used does not
+ * depend on its length, and stored in a small file with the format version and the
+ * {@link TrackIdentity} of the source, so it is only computed again when the source changes.
+ */
+public class WaveformEnvelope {
+
+    /**
+     * Magic number at the start of the file, "VENV".
+     */
+    private static final int MAGIC = 0x56454E56;
+
+    /**
+     * Version of the file format, incremented when the format changes.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the file header in bytes: magic, version, track identity and segment count.
+     */
+    private static final int HEADER_SIZE = 36;
+
+    /**
+     * Size of each segment in the file in bytes: the lowest and the highest sample.
+     */
+    private static final int SEGMENT_SIZE = 2;
+
+    /**
+     * Quantity of samples decoded at a time.
+     */
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Scale of the samples stored in one byte.
+     */
+    private static final float BYTE_SCALE = 127F;
+
+    /**
+     * Suffix of the file written while the envelope is stored.
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Lowest sample of each segment.
+     */
+    private final float[] mMin;
+
+    /**
+     * Highest sample of each segment.
+     */
+    private final float[] mMax;
+
+    /**
+     * Create a new instance of {@link WaveformEnvelope}.
+     *
+     * @param min lowest sample of each segment
+     * @param max highest sample of each segment
+     */
+    private WaveformEnvelope(float[] min, float[] max) {
+        mMin = min;
+        mMax = max;
+    }
+
+    /**
+     * Compute the envelope of a track, decoding it in chunks.
+     *
+     * @param decoder      decoder of the track
+     * @param segmentCount quantity of segments
+     *
+     * @return the envelope of the track
+     *
+     * @throws IOException if the track can not be decoded
+     */
+    public static WaveformEnvelope compute(WavDecoder decoder, int segmentCount)
+            throws IOException {
+        final float[] min = new float[segmentCount];
+        final float[] max = new float[segmentCount];
+        final float[] chunk = new float[CHUNK_SIZE];
+        final long frameCount = Math.max(1, decoder.getFrameCount());
+
+        long index = 0;
+        int read;
+        while ((read = decoder.read(chunk, 0, CHUNK_SIZE)) > 0) {
+            for (int i = 0; i < read; i++) {
+                final int segment =
+                        (int) Math.min(segmentCount - 1, index++ * segmentCount / frameCount);
+                final float sample = chunk[i];
+                if (sample < min[segment]) {
+                    min[segment] = sample;
+                }
+                if (sample > max[segment]) {
+                    max[segment] = sample;
+                }
+            }
+        }
+        return new WaveformEnvelope(min, max);
+    }
+
+    /**
+     * Read a stored envelope, if it was computed from the track with the same quantity of
+     * segments. A truncated or corrupt file is deleted, so the envelope is computed again.
+     *
+     * @param file         envelope file
+     * @param identity     identity of the track
+     * @param segmentCount quantity of segments
+     *
+     * @return the envelope, or null if the file does not exist or must be computed again
+     *
+     * @throws IOException if the file can not be read
+     */
+    public static WaveformEnvelope open(File file, TrackIdentity identity, int segmentCount)
+            throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        if (file.length() != HEADER_SIZE + (long) segmentCount * SEGMENT_SIZE) {
+            // Truncated, corrupt or written with another quantity of segments.
+            file.delete();
+            return null;
+        }
+        final DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC
+                    || input.readInt() != VERSION
+                    || input.readLong() != identity.getUriHash()
+                    || input.readLong() != identity.getSize()
+                    || input.readLong() != identity.getModified()
+                    || input.readInt() != segmentCount) {
+                return null;
+            }
+            final float[] min = new float[segmentCount];
+            final float[] max = new float[segmentCount];
+            for (int segment = 0; segment < segmentCount; segment++) {
+                min[segment] = input.readByte() / BYTE_SCALE;
+                max[segment] = input.readByte() / BYTE_SCALE;
+            }
+            return new WaveformEnvelope(min, max);
+        } catch (EOFException e) {
+            e.printStackTrace();
+            file.delete();
+            return null;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Store the envelope, replacing the existing file.
+     *
+     * @param file     envelope file
+     * @param identity identity of the track
+     *
+     * @throws IOException if the file can not be written
+     */
+    public void write(File file, TrackIdentity identity) throws IOException {
+        final File temporary = new File(file.getPath() + TEMPORARY_SUFFIX);
+        final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(identity.getUriHash());
+            output.writeLong(identity.getSize());
+            output.writeLong(identity.getModified());
+            output.writeInt(mMin.length);
+            for (int segment = 0; segment < mMin.length; segment++) {
+                output.writeByte(Math.round(mMin[segment] * BYTE_SCALE));
+                output.writeByte(Math.round(mMax[segment] * BYTE_SCALE));
+            }
+        } finally {
+            output.close();
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Could not write " + file);
+        }
+    }
+
+    /**
+     * Get the quantity of segments.
+     *
+     * @return quantity of segments
+     */
+    public int getSegmentCount() {
+        return mMin.length;
+    }
+
+    /**
+     * Get the lowest sample of a segment.
+     *
+     * @param segment index of the segment
+     *
+     * @return lowest sample, between -1 and 0
+     */
+    public float getMin(int segment) {
+        return mMin[segment];
+    }
+
+    /**
+     * Get the highest sample of a segment.
+     *
+     * @param segment index of the segment
+     *
+     * @return highest sample, between 0 and 1
+     */
+    public float getMax(int segment) {
+        return mMax[segment];
+    }
+}
@@ -0,0 +1,65 @@
+package com.escodro.viittaus.audio;
+
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Store of the {@link WaveformEnvelope} of each track, kept in the cache directory of the
+ * application.
+ * <p/>
+ * The envelope of a track is computed the first time it is loaded, and only read from its file in
+ * the next times, until the track changes. Loading may decode a whole track, so it must not be
+ * called from the main thread.
+ */
+public class WaveformEnvelopeStore extends TrackCache<WaveformEnvelope> {
+
+    /**
+     * Name of the directory with the envelope files, in the cache directory.
+     */
+    private static final String DIRECTORY = "envelope";
+
+    /**
+     * Extension of the envelope files.
+     */
+    private static final String EXTENSION = ".env";
+
+    /**
+     * Create a new instance of {@link WaveformEnvelopeStore}.
+     *
+     * @param context application context
+     */
+    public WaveformEnvelopeStore(Context context) {
+        super(context, DIRECTORY, EXTENSION);
+    }
+
+    /**
+     * Load the envelope of a track, computing it if it is not stored or the track changed.
+     *
+     * @param uri          uri of a WAV track
+     * @param segmentCount quantity of segments
+     *
+     * @return the envelope of the track
+     *
+     * @throws IOException if the track can not be decoded or the envelope can not be stored
+     */
+    public WaveformEnvelope load(Uri uri, int segmentCount) throws IOException {
+        return loadTrack(uri, segmentCount);
+    }
+
+    @Override
+    protected WaveformEnvelope open(File file, TrackIdentity identity, int segmentCount)
+            throws IOException {
+        return WaveformEnvelope.open(file, identity, segmentCount);
+    }
+
+    @Override
+    protected WaveformEnvelope compute(WavDecoder decoder, TrackIdentity identity, File file,
+                                       int segmentCount) throws IOException {
+        final WaveformEnvelope envelope = WaveformEnvelope.compute(decoder, segmentCount);
+        envelope.write(file, identity);
+        return envelope;
+    }
+}
@@ -15,6 +15,7 @@ import com.escodro.viittaus.activity.ChronusActivity;
 import com.escodro.viittaus.activity.PlayerActivity;
 import com.escodro.viittaus.activity.RadarActivity;
 import com.escodro.viittaus.activity.SpectreActivity;
+import com.escodro.viittaus.activity.WorldClockActivity;
 import com.escodro.viittaus.adapter.MainRecyclerAdapter;
 import com.escodro.viittaus.model.CustomView;
 
@@ -69,6 +70,11 @@ public class ViewListFragment extends Fragment {
                 "ChronusView",
                 "A view to simulate a clock",
                 ChronusActivity.class));
+
+        mViewList.add(new CustomView(R.drawable.ic_chronus_view,
+                "WorldClockView",
+                "A grid of clocks in different time zones",
+                WorldClockActivity.class));
     }
 
     private void setupRecyclerView() {
@@ -0,0 +1,379 @@
+package com.escodro.viittaus.radar;
+
+import com.escodro.viittaus.util.IntIntMap;
+import com.escodro.viittaus.view.RadarView;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background reader of a binary contact feed that drives a {@link RadarView}.
+ * <p/>
+ * The feed is a stream of {@link #RECORD_SIZE} bytes records in big-endian order: the contact id
+ * (int), its bearing in degrees, range between 0 and 1 and intensity between 0 and 1 (floats) and a
+ * timestamp in milliseconds (long). A negative intensity removes the contact. The channel can be a
+ * local socket, a pipe or a capture file, which can be replayed at the speed of its timestamps.
+ * <p/>
+ * The records are read into a direct {@link ByteBuffer} and decoded in batches in the feed thread,
+ * then offered to the render thread of the view through its lock-free channel. When the render
+ * thread falls behind, the updates that do not fit are coalesced by contact id, so only the latest
+ * update of each contact is kept, and offered again every {@link #PENDING_RETRY_MILLIS} even if no
+ * record arrives; they are only dropped when too many distinct contacts are waiting. A selectable
+ * channel, such as a socket or a pipe, is read without blocking so the retries are not held by a
+ * quiet feed, and at the end of the channel the pending updates are still offered until they are
+ * all accepted or the feed is stopped. The feed thread never blocks on the render thread.
+ */
+public class ContactFeed implements Runnable {
+
+    /**
+     * Size of a record in bytes.
+     */
+    public static final int RECORD_SIZE = 24;
+
+    /**
+     * Quantity of records read and decoded at a time.
+     */
+    private static final int BATCH_RECORDS = 512;
+
+    /**
+     * Maximum quantity of contacts whose updates wait for room in the view channel.
+     */
+    private static final int MAX_PENDING_UPDATES = 16384;
+
+    /**
+     * Name of the feed thread.
+     */
+    private static final String THREAD_NAME = "ContactFeed";
+
+    /**
+     * Nanoseconds in one millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Interval between two offers of the pending updates while the view channel is full, in
+     * milliseconds.
+     */
+    private static final long PENDING_RETRY_MILLIS = 16;
+
+    /**
+     * Channel the records are read from.
+     */
+    private final ReadableByteChannel mChannel;
+
+    /**
+     * View fed with the contact updates.
+     */
+    private final RadarView mRadarView;
+
+    /**
+     * Direct buffer the records are read into.
+     */
+    private final ByteBuffer mBuffer;
+
+    /**
+     * Updates decoded from the last batch of records.
+     */
+    private final int[] mUpdates;
+
+    /**
+     * Updates rejected by the view channel, waiting to be offered again.
+     */
+    private final int[] mPendingUpdates;
+
+    /**
+     * Index of the pending update of each contact id.
+     */
+    private final IntIntMap mPendingIndexes;
+
+    /**
+     * Quantity of pending updates.
+     */
+    private int mPendingCount;
+
+    /**
+     * Boolean to represent if the records are replayed at the speed of their timestamps.
+     */
+    private final boolean mReplay;
+
+    /**
+     * Timestamp of the first record, used by the replay. Only accessed by the feed thread.
+     */
+    private long mFirstTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Monotonic time when the first record was read, in nanoseconds.
+     */
+    private long mReplayStart;
+
+    /**
+     * Quantity of records read.
+     */
+    private volatile long mReceivedRecords;
+
+    /**
+     * Quantity of updates dropped because too many contacts were waiting.
+     */
+    private volatile long mDroppedUpdates;
+
+    /**
+     * Feed thread, or null when the feed is stopped.
+     */
+    private Thread mThread;
+
+    /**
+     * Create a new instance of {@link ContactFeed}.
+     *
+     * @param channel   channel with the records, closed when the feed stops
+     * @param radarView view fed with the contact updates
+     * @param replay    true to publish the records at the speed of their timestamps, as for a
+     *                  capture file, false to publish them as soon as they are read
+     */
+    public ContactFeed(ReadableByteChannel channel, RadarView radarView, boolean replay) {
+        mChannel = channel;
+        mRadarView = radarView;
+        mReplay = replay;
+        mBuffer = ByteBuffer.allocateDirect(RECORD_SIZE * BATCH_RECORDS)
+                .order(ByteOrder.BIG_ENDIAN);
+        mUpdates = new int[BATCH_RECORDS * RadarView.CONTACT_UPDATE_SIZE];
+        mPendingUpdates = new int[MAX_PENDING_UPDATES * RadarView.CONTACT_UPDATE_SIZE];
+        mPendingIndexes = new IntIntMap(MAX_PENDING_UPDATES);
+    }
+
+    /**
+     * Write a record in the buffer, in the feed format.
+     *
+     * @param buffer          buffer to be written, in big-endian order
+     * @param id              contact id
+     * @param bearing         bearing in degrees, clockwise from the top
+     * @param range           range between 0 and 1
+     * @param intensity       intensity between 0 and 1, or negative to remove the contact
+     * @param timestampMillis timestamp in milliseconds
+     */
+    public static void putRecord(ByteBuffer buffer, int id, float bearing, float range,
+                                 float intensity, long timestampMillis) {
+        buffer.putInt(id);
+        buffer.putFloat(bearing);
+        buffer.putFloat(range);
+        buffer.putFloat(intensity);
+        buffer.putLong(timestampMillis);
+    }
+
+    /**
+     * Start reading the feed in a background thread.
+     */
+    public synchronized void start() {
+        if (mThread == null) {
+            mThread = new Thread(this, THREAD_NAME);
+            mThread.start();
+        }
+    }
+
+    /**
+     * Stop reading the feed and close its channel.
+     */
+    public synchronized void stop() {
+        if (mThread != null) {
+            mThread.interrupt();
+            mThread = null;
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Get the quantity of records read.
+     *
+     * @return quantity of records
+     */
+    public long getReceivedRecords() {
+        return mReceivedRecords;
+    }
+
+    /**
+     * Get the quantity of updates dropped because the view could not keep up.
+     *
+     * @return quantity of dropped updates
+     */
+    public long getDroppedUpdates() {
+        return mDroppedUpdates;
+    }
+
+    @Override
+    public void run() {
+        Selector selector = null;
+        try {
+            if (mChannel instanceof SelectableChannel) {
+                final SelectableChannel channel = (SelectableChannel) mChannel;
+                channel.configureBlocking(false);
+                selector = Selector.open();
+                channel.register(selector, SelectionKey.OP_READ);
+            }
+            while (!Thread.currentThread().isInterrupted()) {
+                if (selector != null) {
+                    // Wait for records, waking up to offer the pending updates again.
+                    selector.select(mPendingCount > 0 ? PENDING_RETRY_MILLIS : 0);
+                    selector.selectedKeys().clear();
+                }
+                final int read = mChannel.read(mBuffer);
+                if (read < 0) {
+                    drainPending();
+                    break;
+                }
+                mBuffer.flip();
+                final int count = decode();
+                mBuffer.compact();
+
+                flushPending();
+                if (count > 0) {
+                    publish(count);
+                }
+            }
+        } catch (ClosedChannelException e) {
+            // The feed was stopped while waiting for records.
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeSelector(selector);
+        }
+    }
+
+    /**
+     * Close the selector of the channel, if it was opened.
+     *
+     * @param selector selector, or null
+     */
+    private static void closeSelector(Selector selector) {
+        if (selector == null) {
+            return;
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Offer the pending updates at the end of the channel until they are all accepted or the
+     * feed is stopped, waiting between the offers for the render thread to drain its channel.
+     */
+    private void drainPending() {
+        while (mPendingCount > 0 && !Thread.currentThread().isInterrupted()) {
+            flushPending();
+            if (mPendingCount > 0) {
+                LockSupport.parkNanos(PENDING_RETRY_MILLIS * NANOS_PER_MILLI);
+            }
+        }
+    }
+
+    /**
+     * Decode the complete records in the buffer into updates, keeping the bits of the floats.
+     *
+     * @return quantity of updates decoded
+     */
+    private int decode() {
+        final int count = mBuffer.remaining() / RECORD_SIZE;
+        long timestamp = 0;
+        for (int i = 0; i < count; i++) {
+            final int index = i * RadarView.CONTACT_UPDATE_SIZE;
+            mUpdates[index] = mBuffer.getInt();
+            mUpdates[index + 1] = mBuffer.getInt();
+            mUpdates[index + 2] = mBuffer.getInt();
+            mUpdates[index + 3] = mBuffer.getInt();
+            timestamp = mBuffer.getLong();
+        }
+        mReceivedRecords += count;
+        if (count > 0 && mReplay) {
+            waitForReplay(timestamp);
+        }
+        return count;
+    }
+
+    /**
+     * Wait until the record with the timestamp is due, relative to the first record replayed.
+     *
+     * @param timestamp timestamp of the last record of the batch, in milliseconds
+     */
+    private void waitForReplay(long timestamp) {
+        final long now = System.nanoTime();
+        if (mFirstTimestamp == Long.MIN_VALUE) {
+            mFirstTimestamp = timestamp;
+            mReplayStart = now;
+        }
+        final long due = mReplayStart + (timestamp - mFirstTimestamp) * NANOS_PER_MILLI;
+        if (due > now) {
+            try {
+                Thread.sleep((due - now) / NANOS_PER_MILLI);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Offer the decoded updates to the view, keeping the rejected ones as pending.
+     *
+     * @param count quantity of decoded updates
+     */
+    private void publish(int count) {
+        int accepted = 0;
+        if (mPendingCount == 0) {
+            accepted = mRadarView.offerContactUpdates(mUpdates, 0, count);
+        }
+        for (int i = accepted; i < count; i++) {
+            addPending(i * RadarView.CONTACT_UPDATE_SIZE);
+        }
+    }
+
+    /**
+     * Keep a rejected update as pending, replacing the pending update of the same contact.
+     *
+     * @param updateIndex index of the update in the decoded updates
+     */
+    private void addPending(int updateIndex) {
+        final int id = mUpdates[updateIndex];
+        int pending = mPendingIndexes.get(id);
+        if (pending == IntIntMap.NO_VALUE) {
+            if (mPendingCount == MAX_PENDING_UPDATES) {
+                mDroppedUpdates++;
+                return;
+            }
+            pending = mPendingCount++;
+            mPendingIndexes.put(id, pending);
+        }
+        System.arraycopy(mUpdates, updateIndex, mPendingUpdates,
+                pending * RadarView.CONTACT_UPDATE_SIZE, RadarView.CONTACT_UPDATE_SIZE);
+    }
+
+    /**
+     * Offer the pending updates to the view again, keeping the ones still rejected.
+     */
+    private void flushPending() {
+        if (mPendingCount == 0) {
+            return;
+        }
+        final int accepted = mRadarView.offerContactUpdates(mPendingUpdates, 0, mPendingCount);
+        if (accepted == 0) {
+            return;
+        }
+        final int remaining = mPendingCount - accepted;
+        System.arraycopy(mPendingUpdates, accepted * RadarView.CONTACT_UPDATE_SIZE,
+                mPendingUpdates, 0, remaining * RadarView.CONTACT_UPDATE_SIZE);
+        mPendingIndexes.clear();
+        for (int i = 0; i < remaining; i++) {
+            mPendingIndexes.put(mPendingUpdates[i * RadarView.CONTACT_UPDATE_SIZE], i);
+        }
+        mPendingCount = remaining;
+    }
+}
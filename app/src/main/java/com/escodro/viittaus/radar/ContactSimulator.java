@@ -0,0 +1,175 @@
+package com.escodro.viittaus.radar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+/**
+ * Background writer of a simulated binary contact feed, in the format read by
+ * {@link ContactFeed}.
+ * <p/>
+ * It first writes every contact at a random position, then moves a few random contacts every
+ * {@link #STEP_MILLIS}, so the other end of the channel receives a steady stream of updates.
+ */
+public class ContactSimulator implements Runnable {
+
+    /**
+     * Interval between two steps of the simulation, in milliseconds.
+     */
+    private static final long STEP_MILLIS = 100;
+
+    /**
+     * Quantity of contacts moved in each step.
+     */
+    private static final int STEP_CONTACTS = 100;
+
+    /**
+     * Largest change of bearing of a contact in a step, in degrees.
+     */
+    private static final float MAX_BEARING_DRIFT = 2F;
+
+    /**
+     * Largest change of range of a contact in a step.
+     */
+    private static final float MAX_RANGE_DRIFT = 0.01F;
+
+    /**
+     * Name of the simulator thread.
+     */
+    private static final String THREAD_NAME = "ContactSimulator";
+
+    /**
+     * Channel the records are written to.
+     */
+    private final WritableByteChannel mChannel;
+
+    /**
+     * Bearing of each contact, in degrees.
+     */
+    private final float[] mBearings;
+
+    /**
+     * Range of each contact, between 0 and 1.
+     */
+    private final float[] mRanges;
+
+    /**
+     * Intensity of each contact, between 0 and 1.
+     */
+    private final float[] mIntensities;
+
+    /**
+     * Buffer the records are written from.
+     */
+    private final ByteBuffer mBuffer;
+
+    /**
+     * Random generator of the positions.
+     */
+    private final Random mRandom = new Random();
+
+    /**
+     * Simulator thread, or null when the simulator is stopped.
+     */
+    private Thread mThread;
+
+    /**
+     * Create a new instance of {@link ContactSimulator}.
+     *
+     * @param channel      channel the records are written to, closed when the simulator stops
+     * @param contactCount quantity of simulated contacts
+     */
+    public ContactSimulator(WritableByteChannel channel, int contactCount) {
+        mChannel = channel;
+        mBearings = new float[contactCount];
+        mRanges = new float[contactCount];
+        mIntensities = new float[contactCount];
+        mBuffer = ByteBuffer.allocateDirect(ContactFeed.RECORD_SIZE * contactCount)
+                .order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Start writing the feed in a background thread.
+     */
+    public synchronized void start() {
+        if (mThread == null) {
+            mThread = new Thread(this, THREAD_NAME);
+            mThread.start();
+        }
+    }
+
+    /**
+     * Stop writing the feed and close its channel.
+     */
+    public synchronized void stop() {
+        if (mThread != null) {
+            mThread.interrupt();
+            mThread = null;
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int id = 0; id < mBearings.length; id++) {
+                mBearings[id] = mRandom.nextFloat() * 360;
+                mRanges[id] = mRandom.nextFloat();
+                mIntensities[id] = mRandom.nextFloat();
+                putRecord(id);
+            }
+            write();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(STEP_MILLIS);
+                for (int i = 0; i < STEP_CONTACTS; i++) {
+                    final int id = mRandom.nextInt(mBearings.length);
+                    mBearings[id] += (mRandom.nextFloat() * 2 - 1) * MAX_BEARING_DRIFT;
+                    mRanges[id] = Math.max(0, Math.min(1,
+                            mRanges[id] + (mRandom.nextFloat() * 2 - 1) * MAX_RANGE_DRIFT));
+                    putRecord(id);
+                }
+                write();
+            }
+        } catch (InterruptedException e) {
+            // The simulator was stopped while waiting for the next step.
+        } catch (ClosedChannelException e) {
+            // The simulator was stopped while writing.
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Put the record of a contact in the buffer.
+     *
+     * @param id contact id
+     */
+    private void putRecord(int id) {
+        if (mBuffer.remaining() < ContactFeed.RECORD_SIZE) {
+            return;
+        }
+        ContactFeed.putRecord(mBuffer, id, mBearings[id], mRanges[id], mIntensities[id],
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Write the records in the buffer to the channel.
+     *
+     * @throws IOException if the channel can not be written
+     */
+    private void write() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+}
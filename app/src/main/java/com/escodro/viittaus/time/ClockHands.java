@@ -0,0 +1,103 @@
+package com.escodro.viittaus.time;
+
+/**
+ * Angles of the hands of an analog clock for a local time.
+ * <p/>
+ * The angles are continuous, in degrees clockwise from the twelve o'clock position: each hand
+ * moves a little in every millisecond, so a frame can show a sweeping hand as well as a ticking one
+ * (given a time truncated to the second). Updating the angles does not allocate.
+ */
+public class ClockHands {
+
+    /**
+     * Milliseconds in one minute, the period of the seconds hand.
+     */
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+    /**
+     * Milliseconds in one hour, the period of the minutes hand.
+     */
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+
+    /**
+     * Milliseconds in twelve hours, the period of the hours hand.
+     */
+    private static final long MILLIS_PER_HALF_DAY = 12 * MILLIS_PER_HOUR;
+
+    /**
+     * Degrees in one turn of a hand.
+     */
+    private static final float FULL_TURN = 360F;
+
+    /**
+     * Angle of the hours hand.
+     */
+    private float mHourAngle;
+
+    /**
+     * Angle of the minutes hand.
+     */
+    private float mMinuteAngle;
+
+    /**
+     * Angle of the seconds hand.
+     */
+    private float mSecondAngle;
+
+    /**
+     * Update the angles for the local time. Each angle is the fraction of the hand period elapsed,
+     * times the circumference:
+     * <p/>
+     * [local time % period] * ([circumference] / [period])
+     *
+     * @param localTimeMillis local time, as milliseconds since the epoch plus the zone offset
+     */
+    public void setTime(long localTimeMillis) {
+        mSecondAngle = toAngle(localTimeMillis, MILLIS_PER_MINUTE);
+        mMinuteAngle = toAngle(localTimeMillis, MILLIS_PER_HOUR);
+        mHourAngle = toAngle(localTimeMillis, MILLIS_PER_HALF_DAY);
+    }
+
+    /**
+     * Convert the time to the angle of a hand with the given period.
+     *
+     * @param timeMillis   time in milliseconds
+     * @param periodMillis time for a full turn of the hand, in milliseconds
+     *
+     * @return hand angle in degrees
+     */
+    private static float toAngle(long timeMillis, long periodMillis) {
+        long elapsed = timeMillis % periodMillis;
+        if (elapsed < 0) {
+            elapsed += periodMillis;
+        }
+        return elapsed * FULL_TURN / periodMillis;
+    }
+
+    /**
+     * Get the angle of the hours hand.
+     *
+     * @return angle in degrees
+     */
+    public float getHourAngle() {
+        return mHourAngle;
+    }
+
+    /**
+     * Get the angle of the minutes hand.
+     *
+     * @return angle in degrees
+     */
+    public float getMinuteAngle() {
+        return mMinuteAngle;
+    }
+
+    /**
+     * Get the angle of the seconds hand.
+     *
+     * @return angle in degrees
+     */
+    public float getSecondAngle() {
+        return mSecondAngle;
+    }
+}
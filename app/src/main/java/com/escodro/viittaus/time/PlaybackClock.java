@@ -0,0 +1,118 @@
+package com.escodro.viittaus.time;
+
+/**
+ * Clock with the playback position of a player.
+ * <p/>
+ * The player syncs the clock with its real position at a low rate and when its state changes, and
+ * between two syncs the position is extrapolated from the monotonic clock while playing. Each sync
+ * publishes an immutable anchor, so the position can be read from any thread, such as the render
+ * thread on every frame, without querying the player.
+ */
+public class PlaybackClock {
+
+    /**
+     * Nanoseconds in one millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Last synced state of the player.
+     */
+    private volatile Anchor mAnchor = new Anchor(0, 0, 0, false);
+
+    /**
+     * Sync the clock with the state of the player. Only one thread may sync the clock.
+     *
+     * @param positionMillis playback position, in milliseconds
+     * @param durationMillis duration of the track, in milliseconds, or zero if unknown
+     * @param playing        true if the player is playing
+     */
+    public void sync(long positionMillis, long durationMillis, boolean playing) {
+        mAnchor = new Anchor(positionMillis, System.nanoTime(), durationMillis, playing);
+    }
+
+    /**
+     * Get the playback position now.
+     *
+     * @return playback position, in milliseconds
+     */
+    public long getPositionMillis() {
+        return getPositionMillis(System.nanoTime());
+    }
+
+    /**
+     * Get the playback position at a time, such as the time of the frame being drawn.
+     *
+     * @param timeNanos time in nanoseconds, in the {@link System#nanoTime()} time base
+     *
+     * @return playback position, in milliseconds, never beyond the duration
+     */
+    public long getPositionMillis(long timeNanos) {
+        final Anchor anchor = mAnchor;
+        if (!anchor.playing) {
+            return anchor.positionMillis;
+        }
+        final long elapsed = Math.max(0, timeNanos - anchor.timeNanos) / NANOS_PER_MILLI;
+        final long position = anchor.positionMillis + elapsed;
+        return anchor.durationMillis > 0 ? Math.min(anchor.durationMillis, position) : position;
+    }
+
+    /**
+     * Get the duration of the track.
+     *
+     * @return duration, in milliseconds, or zero if unknown
+     */
+    public long getDurationMillis() {
+        return mAnchor.durationMillis;
+    }
+
+    /**
+     * Get if the player was playing in the last sync.
+     *
+     * @return true if the position is moving
+     */
+    public boolean isPlaying() {
+        return mAnchor.playing;
+    }
+
+    /**
+     * State of the player in a sync.
+     */
+    private static final class Anchor {
+
+        /**
+         * Playback position, in milliseconds.
+         */
+        final long positionMillis;
+
+        /**
+         * Monotonic time of the sync, in nanoseconds.
+         */
+        final long timeNanos;
+
+        /**
+         * Duration of the track, in milliseconds.
+         */
+        final long durationMillis;
+
+        /**
+         * Boolean to represent if the player was playing.
+         */
+        final boolean playing;
+
+        /**
+         * Create a new instance of {@link Anchor}.
+         *
+         * @param positionMillis playback position, in milliseconds
+         * @param timeNanos      monotonic time of the sync, in nanoseconds
+         * @param durationMillis duration of the track, in milliseconds
+         * @param playing        true if the player was playing
+         */
+        Anchor(long positionMillis, long timeNanos, long durationMillis, boolean playing) {
+            this.positionMillis = positionMillis;
+            this.timeNanos = timeNanos;
+            this.durationMillis = durationMillis;
+            this.playing = playing;
+        }
+    }
+}
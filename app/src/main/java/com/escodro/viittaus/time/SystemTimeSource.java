@@ -0,0 +1,96 @@
+package com.escodro.viittaus.time;
+
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link TimeSource} of the device clock.
+ * <p/>
+ * The time is extrapolated from the monotonic clock since the last read of the wall clock, so it
+ * always moves forward smoothly between two frames. The wall clock is read again every few seconds,
+ * to follow the adjustments made to the device time. The local time zone can be replaced from
+ * any thread with {@link #setZone(TimeZone)}, such as by a {@link TimeZoneReceiver} when the device
+ * changes zone, and it is applied by the next read. Otherwise an instance must only be used by one
+ * thread at a time.
+ */
+public class SystemTimeSource implements TimeSource {
+
+    /**
+     * Nanoseconds in one millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Interval between two reads of the wall clock, in nanoseconds.
+     */
+    private static final long RESYNC_INTERVAL = 10 * 1000 * NANOS_PER_MILLI;
+
+    /**
+     * Cache of the offset of the local time zone.
+     */
+    private ZoneOffsetCache mZoneOffset;
+
+    /**
+     * Time zone set and not yet applied by the reading thread, or null.
+     */
+    private final AtomicReference<TimeZone> mPendingZone = new AtomicReference<TimeZone>();
+
+    /**
+     * Wall clock time of the last read, in milliseconds since the epoch.
+     */
+    private long mSyncTimeMillis;
+
+    /**
+     * Monotonic time of the last read of the wall clock, in nanoseconds.
+     */
+    private long mSyncNanos;
+
+    /**
+     * Boolean to represent if the wall clock was read at least once.
+     */
+    private boolean mSynced;
+
+    /**
+     * Create a new instance of {@link SystemTimeSource} in the default time zone of the device.
+     */
+    public SystemTimeSource() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * Create a new instance of {@link SystemTimeSource}.
+     *
+     * @param zone local time zone
+     */
+    public SystemTimeSource(TimeZone zone) {
+        mZoneOffset = new ZoneOffsetCache(zone);
+    }
+
+    /**
+     * Replace the local time zone. It can be called from any thread.
+     *
+     * @param zone local time zone
+     */
+    public void setZone(TimeZone zone) {
+        mPendingZone.set(zone);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        final long now = System.nanoTime();
+        if (!mSynced || now - mSyncNanos >= RESYNC_INTERVAL) {
+            mSynced = true;
+            mSyncTimeMillis = System.currentTimeMillis();
+            mSyncNanos = now;
+        }
+        return mSyncTimeMillis + (now - mSyncNanos) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public int getZoneOffset(long timeMillis) {
+        if (mPendingZone.get() != null) {
+            mZoneOffset = new ZoneOffsetCache(mPendingZone.getAndSet(null));
+        }
+        return mZoneOffset.getOffset(timeMillis);
+    }
+}
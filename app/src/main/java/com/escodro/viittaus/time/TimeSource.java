@@ -0,0 +1,24 @@
+package com.escodro.viittaus.time;
+
+/**
+ * Source of the time shown by the clock views. Implementations must not allocate when called,
+ * since they are queried in every frame.
+ */
+public interface TimeSource {
+
+    /**
+     * Get the current time.
+     *
+     * @return milliseconds since the epoch, in UTC
+     */
+    long currentTimeMillis();
+
+    /**
+     * Get the offset of the local time zone from UTC at the given time.
+     *
+     * @param timeMillis milliseconds since the epoch, in UTC
+     *
+     * @return zone offset in milliseconds, including daylight saving time
+     */
+    int getZoneOffset(long timeMillis);
+}
@@ -0,0 +1,76 @@
+package com.escodro.viittaus.time;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import java.util.TimeZone;
+
+/**
+ * Receiver of the changes of the default time zone of the device.
+ * <p/>
+ * The zone is only looked up when the device broadcasts a change, in the main thread, so the views
+ * that follow the device zone do not have to poll it while rendering.
+ */
+public class TimeZoneReceiver extends BroadcastReceiver {
+
+    /**
+     * Extra of {@link Intent#ACTION_TIMEZONE_CHANGED} with the id of the new time zone.
+     */
+    private static final String EXTRA_TIME_ZONE = "time-zone";
+
+    /**
+     * Listener notified of the changes of the time zone.
+     */
+    private final OnTimeZoneChangedListener mListener;
+
+    /**
+     * Create a new instance of {@link TimeZoneReceiver}.
+     *
+     * @param listener listener notified of the changes of the time zone
+     */
+    public TimeZoneReceiver(OnTimeZoneChangedListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Start receiving the changes of the time zone, notifying the listener of the current zone
+     * first, since it may have changed while not registered.
+     *
+     * @param context context the receiver is registered in
+     */
+    public void register(Context context) {
+        context.registerReceiver(this, new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED));
+        mListener.onTimeZoneChanged(TimeZone.getDefault());
+    }
+
+    /**
+     * Stop receiving the changes of the time zone.
+     *
+     * @param context context the receiver was registered in
+     */
+    public void unregister(Context context) {
+        context.unregisterReceiver(this);
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final String zoneId = intent.getStringExtra(EXTRA_TIME_ZONE);
+        mListener.onTimeZoneChanged(zoneId != null ? TimeZone.getTimeZone(zoneId)
+                : TimeZone.getDefault());
+    }
+
+    /**
+     * Listener of the changes of the default time zone of the device.
+     */
+    public interface OnTimeZoneChangedListener {
+
+        /**
+         * Called in the main thread when the default time zone of the device changes.
+         *
+         * @param zone new time zone
+         */
+        void onTimeZoneChanged(TimeZone zone);
+    }
+}
@@ -0,0 +1,79 @@
+package com.escodro.viittaus.time;
+
+import java.util.TimeZone;
+
+/**
+ * Cache of the UTC offset of a {@link TimeZone}.
+ * <p/>
+ * Zone transitions (daylight saving time changes) always happen on a quarter of an hour boundary,
+ * so the offset is only looked up again when the time leaves the quarter of an hour it was looked
+ * up for. An instance must only be used by one thread at a time.
+ */
+public class ZoneOffsetCache {
+
+    /**
+     * Interval in which the offset of the zone can not change, in milliseconds.
+     */
+    private static final long OFFSET_INTERVAL = 15 * 60 * 1000L;
+
+    /**
+     * Time zone whose offset is cached.
+     */
+    private final TimeZone mZone;
+
+    /**
+     * Offset of the zone in the cached interval, in milliseconds.
+     */
+    private int mOffset;
+
+    /**
+     * Start of the cached interval, in milliseconds since the epoch.
+     */
+    private long mIntervalStart = Long.MAX_VALUE;
+
+    /**
+     * Create a new instance of {@link ZoneOffsetCache}.
+     *
+     * @param zone time zone whose offset is cached
+     */
+    public ZoneOffsetCache(TimeZone zone) {
+        mZone = zone;
+    }
+
+    /**
+     * Get the offset of the zone from UTC at the given time.
+     *
+     * @param timeMillis milliseconds since the epoch, in UTC
+     *
+     * @return zone offset in milliseconds, including daylight saving time
+     */
+    public int getOffset(long timeMillis) {
+        if (timeMillis < mIntervalStart || timeMillis >= mIntervalStart + OFFSET_INTERVAL) {
+            mIntervalStart = timeMillis - floorMod(timeMillis, OFFSET_INTERVAL);
+            mOffset = mZone.getOffset(mIntervalStart);
+        }
+        return mOffset;
+    }
+
+    /**
+     * Get the time zone whose offset is cached.
+     *
+     * @return the time zone
+     */
+    public TimeZone getZone() {
+        return mZone;
+    }
+
+    /**
+     * Get the remainder of the division, always positive, also for times before the epoch.
+     *
+     * @param value   dividend
+     * @param divisor divisor
+     *
+     * @return the positive remainder
+     */
+    private static long floorMod(long value, long divisor) {
+        final long remainder = value % divisor;
+        return remainder < 0 ? remainder + divisor : remainder;
+    }
+}
@@ -0,0 +1,179 @@
+package com.escodro.viittaus.util;
+
+/**
+ * Fixed-capacity hash map from primitive integer keys to non-negative integer values.
+ * <p/>
+ * The entries are stored with open addressing and linear probing in power-of-two arrays, with
+ * deletion by backward shift, so no operation allocates after the map is created. It is not
+ * thread-safe.
+ */
+public class IntIntMap {
+
+    /**
+     * Value returned for missing keys and stored in the empty slots.
+     */
+    public static final int NO_VALUE = -1;
+
+    /**
+     * Multiplier used to spread the keys over the slots.
+     */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /**
+     * Key of each slot.
+     */
+    private final int[] mKeys;
+
+    /**
+     * Value of each slot, or {@link #NO_VALUE} if the slot is empty.
+     */
+    private final int[] mValues;
+
+    /**
+     * Mask to convert a hash in a slot index.
+     */
+    private final int mMask;
+
+    /**
+     * Maximum quantity of entries.
+     */
+    private final int mCapacity;
+
+    /**
+     * Quantity of entries.
+     */
+    private int mSize;
+
+    /**
+     * Create a new instance of {@link IntIntMap}.
+     *
+     * @param capacity maximum quantity of entries
+     */
+    public IntIntMap(int capacity) {
+        int slots = 2;
+        while (slots < capacity * 2) {
+            slots <<= 1;
+        }
+        mKeys = new int[slots];
+        mValues = new int[slots];
+        mMask = slots - 1;
+        mCapacity = capacity;
+        clear();
+    }
+
+    /**
+     * Get the value of a key.
+     *
+     * @param key key of the entry
+     *
+     * @return the value, or {@link #NO_VALUE} if the key is not in the map
+     */
+    public int get(int key) {
+        int slot = slotOf(key);
+        while (mValues[slot] != NO_VALUE) {
+            if (mKeys[slot] == key) {
+                return mValues[slot];
+            }
+            slot = (slot + 1) & mMask;
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Set the value of a key.
+     *
+     * @param key   key of the entry
+     * @param value value of the entry, not negative
+     *
+     * @return true if the value was set, false if the key is new and the map is full
+     */
+    public boolean put(int key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        int slot = slotOf(key);
+        while (mValues[slot] != NO_VALUE) {
+            if (mKeys[slot] == key) {
+                mValues[slot] = value;
+                return true;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        if (mSize == mCapacity) {
+            return false;
+        }
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * Remove a key. The entries after it in the probe sequence are shifted back, so no tombstone
+     * is left behind.
+     *
+     * @param key key of the entry
+     *
+     * @return the removed value, or {@link #NO_VALUE} if the key is not in the map
+     */
+    public int remove(int key) {
+        int slot = slotOf(key);
+        while (mValues[slot] != NO_VALUE && mKeys[slot] != key) {
+            slot = (slot + 1) & mMask;
+        }
+        final int removed = mValues[slot];
+        if (removed == NO_VALUE) {
+            return NO_VALUE;
+        }
+        mValues[slot] = NO_VALUE;
+        mSize--;
+
+        int hole = slot;
+        int next = (slot + 1) & mMask;
+        while (mValues[next] != NO_VALUE) {
+            final int home = slotOf(mKeys[next]);
+            // The entry may fill the hole if its home slot is not between the hole and itself.
+            final int distanceToHome = (next - home) & mMask;
+            final int distanceToHole = (next - hole) & mMask;
+            if (distanceToHome >= distanceToHole) {
+                mKeys[hole] = mKeys[next];
+                mValues[hole] = mValues[next];
+                mValues[next] = NO_VALUE;
+                hole = next;
+            }
+            next = (next + 1) & mMask;
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public void clear() {
+        for (int i = 0; i < mValues.length; i++) {
+            mValues[i] = NO_VALUE;
+        }
+        mSize = 0;
+    }
+
+    /**
+     * Get the quantity of entries.
+     *
+     * @return quantity of entries
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Get the home slot of a key.
+     *
+     * @param key key
+     *
+     * @return slot index
+     */
+    private int slotOf(int key) {
+        final int hash = key * HASH_MULTIPLIER;
+        return (hash ^ (hash >>> 16)) & mMask;
+    }
+}
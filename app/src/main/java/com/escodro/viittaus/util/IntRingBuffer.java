@@ -0,0 +1,85 @@
+package com.escodro.viittaus.util;
+
+/**
+ * Fixed-capacity ring buffer of primitive integers. When the buffer is full, adding a new value
+ * overwrites the oldest one. It never allocates after being created.
+ */
+public class IntRingBuffer {
+
+    /**
+     * Array with the values.
+     */
+    private final int[] mValues;
+
+    /**
+     * Index of the oldest value in the array.
+     */
+    private int mHead;
+
+    /**
+     * Quantity of values in the buffer.
+     */
+    private int mSize;
+
+    /**
+     * Create a new instance of {@link IntRingBuffer}.
+     *
+     * @param capacity maximum quantity of values
+     */
+    public IntRingBuffer(int capacity) {
+        mValues = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Add a value to the end of the buffer, removing the oldest one if the buffer is full.
+     *
+     * @param value value to be added
+     */
+    public void add(int value) {
+        final int capacity = mValues.length;
+        if (mSize < capacity) {
+            mValues[(mHead + mSize) % capacity] = value;
+            mSize++;
+        } else {
+            mValues[mHead] = value;
+            mHead = (mHead + 1) % capacity;
+        }
+    }
+
+    /**
+     * Get the value at the given position, where zero is the oldest value.
+     *
+     * @param index position of the value, between zero and {@link #size()} - 1
+     *
+     * @return the value
+     */
+    public int get(int index) {
+        return mValues[(mHead + index) % mValues.length];
+    }
+
+    /**
+     * Get the quantity of values in the buffer.
+     *
+     * @return quantity of values
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Get the maximum quantity of values in the buffer.
+     *
+     * @return buffer capacity
+     */
+    public int capacity() {
+        return mValues.length;
+    }
+
+    /**
+     * Remove all the values.
+     */
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+}
@@ -0,0 +1,124 @@
+package com.escodro.viittaus.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free single-producer/single-consumer queue of primitive integers.
+ * <p/>
+ * Only one thread may offer values at a time and only one thread may poll them at a time, but
+ * both can run concurrently without locks. The values are stored in a power-of-two array, so no
+ * operation allocates after the queue is created. When the queue is full the newest values are
+ * rejected instead of blocking the producer.
+ */
+public class IntSpscQueue {
+
+    /**
+     * Array with the values.
+     */
+    private final int[] mValues;
+
+    /**
+     * Mask to convert a sequence in an array index.
+     */
+    private final int mMask;
+
+    /**
+     * Sequence of the next value to be polled. Only written by the consumer.
+     */
+    private final AtomicLong mHead = new AtomicLong();
+
+    /**
+     * Sequence of the next value to be offered. Only written by the producer.
+     */
+    private final AtomicLong mTail = new AtomicLong();
+
+    /**
+     * Create a new instance of {@link IntSpscQueue}.
+     *
+     * @param capacity minimum quantity of values, rounded up to a power of two
+     */
+    public IntSpscQueue(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mValues = new int[size];
+        mMask = size - 1;
+    }
+
+    /**
+     * Offer a value. Must only be called by the producer thread.
+     *
+     * @param value value to be offered
+     *
+     * @return true if the value was added, false if the queue is full
+     */
+    public boolean offer(int value) {
+        final long tail = mTail.get();
+        if (tail - mHead.get() >= mValues.length) {
+            return false;
+        }
+        mValues[(int) tail & mMask] = value;
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Offer a range of values in a single publication. Must only be called by the producer
+     * thread. The range is added whole or not at all, so a consumer never sees part of it.
+     *
+     * @param values array with the values
+     * @param offset index of the first value in the array
+     * @param length quantity of values
+     *
+     * @return true if the values were added, false if they do not fit in the queue
+     */
+    public boolean offer(int[] values, int offset, int length) {
+        final long tail = mTail.get();
+        if (length > mValues.length - (tail - mHead.get())) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            mValues[(int) (tail + i) & mMask] = values[offset + i];
+        }
+        mTail.lazySet(tail + length);
+        return true;
+    }
+
+    /**
+     * Poll the available values into the array. Must only be called by the consumer thread.
+     *
+     * @param values array to receive the values
+     * @param offset index of the first value in the array
+     * @param length maximum quantity of values
+     *
+     * @return quantity of values polled
+     */
+    public int poll(int[] values, int offset, int length) {
+        final long head = mHead.get();
+        final int count = (int) Math.min(mTail.get() - head, length);
+        for (int i = 0; i < count; i++) {
+            values[offset + i] = mValues[(int) (head + i) & mMask];
+        }
+        mHead.lazySet(head + count);
+        return count;
+    }
+
+    /**
+     * Get the quantity of values waiting to be polled.
+     *
+     * @return quantity of values
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    /**
+     * Get the maximum quantity of values in the queue.
+     *
+     * @return queue capacity
+     */
+    public int capacity() {
+        return mValues.length;
+    }
+}
@@ -0,0 +1,150 @@
+package com.escodro.viittaus.util;
+
+/**
+ * Maximum and mean of the last values of a stream of primitive integers.
+ * <p/>
+ * The mean is kept with a running sum over a ring of the values in the window, and the maximum
+ * with a monotonic deque: the candidates to be the maximum, in decreasing order, each with the
+ * position it entered the window. Adding a value is O(1) amortized and never allocates. It is not
+ * thread-safe.
+ */
+public class SlidingWindowStats {
+
+    /**
+     * Ring with the values in the window.
+     */
+    private final int[] mWindow;
+
+    /**
+     * Values of the deque of maximum candidates, stored in a ring.
+     */
+    private final int[] mDequeValues;
+
+    /**
+     * Position in the stream of each value of the deque.
+     */
+    private final long[] mDequePositions;
+
+    /**
+     * Index of the front of the deque, the current maximum.
+     */
+    private int mDequeHead;
+
+    /**
+     * Quantity of values in the deque.
+     */
+    private int mDequeSize;
+
+    /**
+     * Index of the ring where the next value is written.
+     */
+    private int mNext;
+
+    /**
+     * Quantity of values in the window.
+     */
+    private int mCount;
+
+    /**
+     * Sum of the values in the window.
+     */
+    private long mSum;
+
+    /**
+     * Position in the stream of the next value.
+     */
+    private long mPosition;
+
+    /**
+     * Create a new instance of {@link SlidingWindowStats}.
+     *
+     * @param windowLength quantity of values in the window
+     */
+    public SlidingWindowStats(int windowLength) {
+        final int length = Math.max(1, windowLength);
+        mWindow = new int[length];
+        mDequeValues = new int[length];
+        mDequePositions = new long[length];
+    }
+
+    /**
+     * Add a value to the window, removing the oldest one if the window is full.
+     *
+     * @param value value to be added
+     */
+    public void add(int value) {
+        final int length = mWindow.length;
+        if (mCount == length) {
+            mSum -= mWindow[mNext];
+        } else {
+            mCount++;
+        }
+        mWindow[mNext] = value;
+        mSum += value;
+        mNext = (mNext + 1) % length;
+
+        // The front leaves the deque when it leaves the window, at most one value per add.
+        if (mDequeSize > 0 && mDequePositions[mDequeHead] <= mPosition - length) {
+            mDequeHead = (mDequeHead + 1) % length;
+            mDequeSize--;
+        }
+        // Values not greater than the new one can never be the maximum again.
+        while (mDequeSize > 0
+                && mDequeValues[(mDequeHead + mDequeSize - 1) % length] <= value) {
+            mDequeSize--;
+        }
+        final int tail = (mDequeHead + mDequeSize) % length;
+        mDequeValues[tail] = value;
+        mDequePositions[tail] = mPosition;
+        mDequeSize++;
+        mPosition++;
+    }
+
+    /**
+     * Get the maximum value in the window.
+     *
+     * @return the maximum, or zero if the window is empty
+     */
+    public int getMax() {
+        return mDequeSize == 0 ? 0 : mDequeValues[mDequeHead];
+    }
+
+    /**
+     * Get the mean of the values in the window.
+     *
+     * @return the mean, or zero if the window is empty
+     */
+    public float getMean() {
+        return mCount == 0 ? 0 : (float) mSum / mCount;
+    }
+
+    /**
+     * Get the quantity of values in the window.
+     *
+     * @return quantity of values
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Get the maximum quantity of values in the window.
+     *
+     * @return window length
+     */
+    public int getWindowLength() {
+        return mWindow.length;
+    }
+
+    /**
+     * Remove all the values.
+     */
+    public void clear() {
+        mDequeHead = 0;
+        mDequeSize = 0;
+        mNext = 0;
+        mCount = 0;
+        mSum = 0;
+        mPosition = 0;
+    }
+}
@@ -1,6 +1,7 @@
 package com.escodro.viittaus.view;
 
 import android.content.Context;
+import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.PixelFormat;
@@ -8,21 +9,126 @@ import android.graphics.PorterDuff;
 import android.support.annotation.ColorRes;
 import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
+import com.escodro.viittaus.R;
+
 /**
  * Abstract {@link SurfaceView} to draw animated views.
  * <p/>
+ * The frames are paced by the display vsync: all the views are rendered by the shared {@link
+ * RenderScheduler} thread, which receives {@link Choreographer} frame callbacks. Each view only
+ * draws when its own frame deadline, given by its frame rate, was reached. When the surface is not
+ * valid the view stops asking for frames until {@link #surfaceCreated(SurfaceHolder)}.
+ * <p/>
+ * A view is only registered in the scheduler while it is resumed, its surface exists and its window
+ * is visible. Size-dependent resources should be rebuilt in {@link #onSurfaceSizeChanged(int,
+ * int)}, which is called in the render thread before the first frame with a new surface size.
+ * <p/>
+ * Parts of the view that do not change between frames can be declared as {@link StaticLayer}s with
+ * {@link #addStaticLayer(StaticLayer)}: they are rendered once per surface size into offscreen
+ * bitmaps and only blitted in each frame by {@link #drawStaticLayer(Canvas, int)}.
+ * <p/>
+ * Animations should not move by frame, but by time: the state is advanced in {@link
+ * #onSimulationStep(float)}, called in fixed time steps on the monotonic frame clock before each
+ * frame, and each frame draws the state interpolated by {@link #getInterpolation()} between the
+ * last two steps. The animation speed is then the same whatever frame rate is achieved.
+ * <p/>
  * Created by IgorEscodro on 26/11/16.
  */
 
-public abstract class AnimatedSurfaceView extends SurfaceView implements Runnable {
+public abstract class AnimatedSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+
+    /**
+     * Render mode where the view is drawn continuously, on every frame deadline.
+     */
+    public static final int RENDER_MODE_CONTINUOUSLY = 0;
+
+    /**
+     * Render mode where the view is only drawn after {@link #requestRender()} is called.
+     */
+    public static final int RENDER_MODE_WHEN_DIRTY = 1;
+
+    /**
+     * Nanoseconds in one millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Nanoseconds in one second.
+     */
+    private static final long NANOS_PER_SECOND = 1000 * NANOS_PER_MILLI;
+
+    /**
+     * Tolerance applied to the frame rate deadline, so a vsync arriving slightly before the
+     * deadline is not skipped (e.g. 30 fps on a 60 Hz display must draw on every other vsync). It
+     * is not applied to the frames scheduled with {@link #requestRenderAt(long)}.
+     */
+    private static final long FRAME_DEADLINE_TOLERANCE = 4 * NANOS_PER_MILLI;
+
+    /**
+     * Interval between two {@link OnFrameStatsListener} reports in nanoseconds.
+     */
+    private static final long FRAME_STATS_REPORT_INTERVAL = 1000 * NANOS_PER_MILLI;
+
+    /**
+     * Default frame rate (frames per second).
+     */
+    private static final int DEFAULT_FRAME_RATE = 30;
+
+    /**
+     * Default lowest frame rate (frames per second) the adaptive governor can set.
+     */
+    private static final int DEFAULT_MIN_FRAME_RATE = 10;
+
+    /**
+     * Default simulation rate (steps per second).
+     */
+    private static final int DEFAULT_SIMULATION_RATE = 60;
+
+    /**
+     * Highest quantity of simulation steps run before a single frame. When the frames are late by
+     * more than this, the remaining time is dropped instead of spiralling into more work.
+     */
+    private static final int MAX_SIMULATION_STEPS = 8;
+
+    /**
+     * Interval between two frames in nanoseconds, given by the effective frame rate.
+     */
+    private volatile long mFrameInterval;
+
+    /**
+     * Frame rate set by the developer (frames per second).
+     */
+    private volatile int mTargetFrameRate;
+
+    /**
+     * Lowest frame rate the adaptive governor can set (frames per second).
+     */
+    private volatile int mMinFrameRate = DEFAULT_MIN_FRAME_RATE;
+
+    /**
+     * Frame rate currently used to pace the frames (frames per second).
+     */
+    private volatile int mEffectiveFrameRate;
 
     /**
-     * Refresh rate (frames per second).
+     * Boolean to represent if the frame rate is adapted to the frame time.
      */
-    private static int mDelay;
+    private volatile boolean mAdaptiveFrameRate;
+
+    /**
+     * Boolean to represent if the frame rate configuration changed and the governor must be reset.
+     */
+    private volatile boolean mFrameRateChanged;
+
+    /**
+     * Adaptive frame rate governor. Only accessed by the render thread.
+     */
+    private final FrameRateGovernor mFrameRateGovernor =
+            new FrameRateGovernor(DEFAULT_FRAME_RATE, DEFAULT_MIN_FRAME_RATE);
 
     /**
      * {@link SurfaceHolder} reference.
@@ -30,19 +136,117 @@ public abstract class AnimatedSurfaceView extends SurfaceView implements Runnabl
     private SurfaceHolder mHolder;
 
     /**
-     * Thread to handle the view animation.
+     * Lock held while drawing on the surface, so the surface is never destroyed in the middle of a
+     * frame.
+     */
+    private final Object mSurfaceLock = new Object();
+
+    /**
+     * Boolean to control the view animation, true between {@link #resume()} and {@link #pause()}.
+     */
+    private volatile boolean mRunning;
+
+    /**
+     * Boolean to represent if the surface exists, between {@link #surfaceCreated(SurfaceHolder)}
+     * and {@link #surfaceDestroyed(SurfaceHolder)}.
+     */
+    private volatile boolean mSurfaceReady;
+
+    /**
+     * Boolean to represent if the window of the view is visible.
+     */
+    private volatile boolean mWindowVisible;
+
+    /**
+     * Boolean to represent if the view is registered in the {@link RenderScheduler}. Only accessed
+     * by the main thread.
+     */
+    private boolean mRegistered;
+
+    /**
+     * Width of the surface, set in {@link #surfaceChanged(SurfaceHolder, int, int, int)}.
+     */
+    private volatile int mSurfaceWidth;
+
+    /**
+     * Height of the surface, set in {@link #surfaceChanged(SurfaceHolder, int, int, int)}.
+     */
+    private volatile int mSurfaceHeight;
+
+    /**
+     * Boolean to represent if the surface size changed since the last frame.
      */
-    private Thread mRenderThread;
+    private volatile boolean mSurfaceSizeChanged;
 
     /**
-     * Boolean to control the view animation.
+     * Current render mode, {@link #RENDER_MODE_CONTINUOUSLY} or {@link #RENDER_MODE_WHEN_DIRTY}.
      */
-    private boolean mRunning;
+    private volatile int mRenderMode = RENDER_MODE_CONTINUOUSLY;
 
     /**
-     * Long to control the frame rate.
+     * Boolean to represent if a new frame was requested by {@link #requestRender()}.
      */
-    private long mCurrentTime;
+    private volatile boolean mRenderRequested;
+
+    /**
+     * Time (in {@link System#nanoTime()} base) of the frame requested by {@link
+     * #requestRenderAt(long)}, or {@link Long#MAX_VALUE} if no frame is scheduled.
+     */
+    private volatile long mScheduledRenderTime = Long.MAX_VALUE;
+
+    /**
+     * Frame time (in {@link System#nanoTime()} base) when the next frame should be drawn. Only
+     * accessed by the render thread.
+     */
+    private long mNextFrameTime;
+
+    /**
+     * Frame timing collector of this view.
+     */
+    private final FrameMetrics mFrameMetrics = new FrameMetrics();
+
+    /**
+     * Listener notified with the frame stats, or null.
+     */
+    private volatile OnFrameStatsListener mFrameStatsListener;
+
+    /**
+     * Frame time of the last {@link OnFrameStatsListener} report. Only accessed by the render
+     * thread.
+     */
+    private long mLastFrameStatsReport;
+
+    /**
+     * Cache of the static layers declared by the children.
+     */
+    private final LayerCache mLayerCache = new LayerCache();
+
+    /**
+     * Duration of one simulation step in nanoseconds.
+     */
+    private volatile long mSimulationStep = NANOS_PER_SECOND / DEFAULT_SIMULATION_RATE;
+
+    /**
+     * Boolean to represent if the simulation clock must restart, so the time the view was not
+     * rendering is not simulated.
+     */
+    private volatile boolean mSimulationReset = true;
+
+    /**
+     * Frame time when the simulation was last advanced. Only accessed by the render thread.
+     */
+    private long mLastSimulationTime;
+
+    /**
+     * Time elapsed and not yet simulated, in nanoseconds. Only accessed by the render thread.
+     */
+    private long mSimulationLag;
+
+    /**
+     * Fraction of a step between the last simulation step and the frame being drawn. Only
+     * accessed by the render thread.
+     */
+    private float mInterpolation;
 
     /**
      * Create a new instance of {@link AnimatedSurfaceView}.
@@ -51,7 +255,7 @@ public abstract class AnimatedSurfaceView extends SurfaceView implements Runnabl
      */
     public AnimatedSurfaceView(Context context) {
         super(context);
-        init();
+        init(null, context);
     }
 
     /**
@@ -62,35 +266,273 @@ public abstract class AnimatedSurfaceView extends SurfaceView implements Runnabl
      */
     public AnimatedSurfaceView(Context context, AttributeSet attrs) {
         super(context, attrs);
-        init();
+        init(attrs, context);
     }
 
     /**
      * Initialize the {@link SurfaceView} with default configuration.
+     *
+     * @param attrs   attribute set, or null
+     * @param context application context
      */
-    private void init() {
+    private void init(AttributeSet attrs, Context context) {
         if (!isInEditMode()) {
-            mCurrentTime = System.currentTimeMillis();
             mHolder = getHolder();
+            mHolder.addCallback(this);
 
             setSurfaceHolderFormat(PixelFormat.TRANSPARENT);
-            setFrameRate(30);
+            setFrameRate(DEFAULT_FRAME_RATE);
+            updateAttributeSetValues(attrs, context);
             setWillNotDraw(false);
             setZOrderOnTop(true);
         }
     }
 
     /**
-     * Set the frame rate in frames per second
+     * Get and update the frame rate values inserted by the developer in the view on the xml. If no
+     * values were inserted, keeps the default ones.
+     *
+     * @param attrs   attribute set
+     * @param context application context
+     */
+    private void updateAttributeSetValues(AttributeSet attrs, Context context) {
+        if (attrs != null) {
+            final TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable
+                    .AnimatedSurfaceView);
+            setMinFrameRate(typedArray.getInt(R.styleable.AnimatedSurfaceView_minFrameRate,
+                    DEFAULT_MIN_FRAME_RATE));
+            setFrameRate(typedArray.getInt(R.styleable.AnimatedSurfaceView_frameRate,
+                    DEFAULT_FRAME_RATE));
+            setAdaptiveFrameRate(typedArray.getBoolean(
+                    R.styleable.AnimatedSurfaceView_adaptiveFrameRate, false));
+            typedArray.recycle();
+        }
+    }
+
+    /**
+     * Set the frame rate in frames per second. When the adaptive frame rate is enabled, this is the
+     * highest frame rate the governor will try to reach.
      *
      * @param framePerSecond frames per second
      */
     protected void setFrameRate(int framePerSecond) {
         if (framePerSecond > 0) {
-            mDelay = 1000 / framePerSecond;
+            mTargetFrameRate = framePerSecond;
+            setEffectiveFrameRate(framePerSecond);
+            mFrameRateChanged = true;
+        }
+    }
+
+    /**
+     * Set the lowest frame rate the adaptive governor can set.
+     *
+     * @param framePerSecond frames per second
+     */
+    public void setMinFrameRate(int framePerSecond) {
+        if (framePerSecond > 0) {
+            mMinFrameRate = framePerSecond;
+            mFrameRateChanged = true;
         }
     }
 
+    /**
+     * Enable or disable the adaptive frame rate. When enabled, the frame rate is lowered (down to
+     * the minimum frame rate) while the frames keep overrunning their budget, and raised again
+     * (up to the frame rate set) when there is headroom.
+     *
+     * @param adaptive true to adapt the frame rate to the frame time
+     */
+    public void setAdaptiveFrameRate(boolean adaptive) {
+        mAdaptiveFrameRate = adaptive;
+        setEffectiveFrameRate(mTargetFrameRate);
+        mFrameRateChanged = true;
+    }
+
+    /**
+     * Get the frame rate currently used to pace the frames. It is the frame rate set, unless the
+     * adaptive governor lowered it.
+     *
+     * @return effective frame rate in frames per second
+     */
+    public int getEffectiveFrameRate() {
+        return mEffectiveFrameRate;
+    }
+
+    /**
+     * Set the frame rate used to pace the frames.
+     *
+     * @param framePerSecond frames per second
+     */
+    private void setEffectiveFrameRate(int framePerSecond) {
+        mEffectiveFrameRate = framePerSecond;
+        mFrameInterval = 1000 * NANOS_PER_MILLI / framePerSecond;
+    }
+
+    /**
+     * Feed the adaptive governor with the frame time and apply the frame rate it decides. Always
+     * called by the render thread.
+     *
+     * @param frameTime time spent drawing the frame in nanoseconds, without locking and posting
+     *                  the canvas
+     */
+    private void updateFrameRate(long frameTime) {
+        if (!mAdaptiveFrameRate) {
+            return;
+        }
+        if (mFrameRateChanged) {
+            mFrameRateChanged = false;
+            mFrameRateGovernor.reset(mTargetFrameRate, mMinFrameRate);
+        }
+        final int frameRate = mFrameRateGovernor.onFrame(frameTime);
+        if (frameRate != mEffectiveFrameRate) {
+            setEffectiveFrameRate(frameRate);
+        }
+    }
+
+    /**
+     * Set the quantity of simulation steps per second, that is how often {@link
+     * #onSimulationStep(float)} is called.
+     *
+     * @param stepsPerSecond simulation steps per second
+     */
+    protected void setSimulationRate(int stepsPerSecond) {
+        if (stepsPerSecond > 0) {
+            mSimulationStep = NANOS_PER_SECOND / stepsPerSecond;
+            mSimulationReset = true;
+        }
+    }
+
+    /**
+     * Called in the render thread to advance the animation state by a fixed time step. It may be
+     * called several times, or not at all, before a frame. Children that animate should keep the
+     * state before and after the step, so {@link #onDrawOnCanvas(Canvas)} can interpolate them.
+     *
+     * @param stepSeconds duration of the step in seconds
+     */
+    protected void onSimulationStep(float stepSeconds) {
+        // Children may override to advance their animation state.
+    }
+
+    /**
+     * Get the fraction of a simulation step elapsed since the last {@link
+     * #onSimulationStep(float)}, used to interpolate the state drawn in the current frame.
+     *
+     * @return interpolation factor, between 0 (inclusive) and 1 (exclusive)
+     */
+    protected float getInterpolation() {
+        return mInterpolation;
+    }
+
+    /**
+     * Advance the simulation in fixed steps up to the frame time. Always called by the render
+     * thread.
+     *
+     * @param frameTimeNanos frame time in nanoseconds, in the {@link System#nanoTime()} time base
+     */
+    private void advanceSimulation(long frameTimeNanos) {
+        final long step = mSimulationStep;
+        if (mSimulationReset) {
+            mSimulationReset = false;
+            mLastSimulationTime = frameTimeNanos;
+            mSimulationLag = 0;
+        }
+        mSimulationLag += frameTimeNanos - mLastSimulationTime;
+        mLastSimulationTime = frameTimeNanos;
+        mSimulationLag = Math.min(mSimulationLag, step * MAX_SIMULATION_STEPS);
+
+        final float stepSeconds = (float) step / NANOS_PER_SECOND;
+        while (mSimulationLag >= step) {
+            onSimulationStep(stepSeconds);
+            mSimulationLag -= step;
+        }
+        mInterpolation = (float) mSimulationLag / step;
+    }
+
+    /**
+     * Set the render mode. In {@link #RENDER_MODE_CONTINUOUSLY} the view is drawn on every frame
+     * deadline; in {@link #RENDER_MODE_WHEN_DIRTY} the view is only drawn (at most once per frame
+     * deadline) after {@link #requestRender()} is called, and it does not use the render thread
+     * while its state does not change.
+     *
+     * @param renderMode {@link #RENDER_MODE_CONTINUOUSLY} or {@link #RENDER_MODE_WHEN_DIRTY}
+     */
+    public void setRenderMode(int renderMode) {
+        mRenderMode = renderMode;
+        requestRender();
+    }
+
+    /**
+     * Get the current render mode.
+     *
+     * @return {@link #RENDER_MODE_CONTINUOUSLY} or {@link #RENDER_MODE_WHEN_DIRTY}
+     */
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * Request a new frame to be drawn. Children in {@link #RENDER_MODE_WHEN_DIRTY} must call this
+     * method whenever their state changes. It can be called from any thread.
+     */
+    public void requestRender() {
+        mRenderRequested = true;
+        if (isRendering()) {
+            RenderScheduler.getInstance().wakeUp();
+        }
+    }
+
+    /**
+     * Request a new frame to be drawn at the first vsync after the given time. Children in {@link
+     * #RENDER_MODE_WHEN_DIRTY} can use it for state that changes with time, so the render thread
+     * parks until then instead of drawing on every frame deadline. Only the latest scheduled frame
+     * is kept. It can be called from any thread.
+     *
+     * @param timeNanos time of the frame in nanoseconds, in the {@link System#nanoTime()} time
+     *                  base
+     */
+    public void requestRenderAt(long timeNanos) {
+        mScheduledRenderTime = timeNanos;
+        if (isRendering()) {
+            RenderScheduler.getInstance().wakeUp();
+        }
+    }
+
+    /**
+     * Get the time of the frame requested by {@link #requestRenderAt(long)}.
+     *
+     * @return time in nanoseconds, or {@link Long#MAX_VALUE} if no frame is scheduled
+     */
+    long getScheduledRenderTime() {
+        return mScheduledRenderTime;
+    }
+
+    /**
+     * Get a snapshot of the frame timing statistics collected since the view was created or since
+     * the last {@link #resetFrameStats()}. It can be called from any thread.
+     *
+     * @return frame stats snapshot
+     */
+    public FrameStats getFrameStats() {
+        return mFrameMetrics.snapshot();
+    }
+
+    /**
+     * Clear the frame timing statistics.
+     */
+    public void resetFrameStats() {
+        mFrameMetrics.reset();
+    }
+
+    /**
+     * Set the listener to be notified with the frame timing statistics about once per second while
+     * the view is rendering. The listener is called in the render thread.
+     *
+     * @param listener listener to be notified, or null to remove it
+     */
+    public void setOnFrameStatsListener(OnFrameStatsListener listener) {
+        mFrameStatsListener = listener;
+    }
+
     /**
      * Set the desired PixelFormat of the surface. The default is OPAQUE. When working with a {@link
      * SurfaceView}, this must be called from the same thread running the SurfaceView's window.
@@ -108,6 +550,62 @@ public abstract class AnimatedSurfaceView extends SurfaceView implements Runnabl
      */
     protected abstract void onDrawOnCanvas(Canvas canvas);
 
+    /**
+     * Method to draw on the canvas with the vsync timestamp of the frame being drawn. Children that
+     * need the frame time should override this method, the default implementation only calls
+     * {@link #onDrawOnCanvas(Canvas)}.
+     *
+     * @param canvas         canvas to be drawn
+     * @param frameTimeNanos frame time in nanoseconds, in the {@link System#nanoTime()} time base
+     */
+    protected void onDrawOnCanvas(Canvas canvas, long frameTimeNanos) {
+        onDrawOnCanvas(canvas);
+    }
+
+    /**
+     * Called in the render thread before the first frame drawn with a new surface size. Children
+     * should create here everything that depends on the view dimensions, instead of in every frame.
+     *
+     * @param width  surface width
+     * @param height surface height
+     */
+    protected void onSurfaceSizeChanged(int width, int height) {
+        // Children may override to rebuild their size-dependent resources.
+    }
+
+    /**
+     * Declare a static layer, which is rendered once per surface size into an offscreen bitmap.
+     * It must be called while the view is created.
+     *
+     * @param layer layer to be cached
+     *
+     * @return id of the layer, to be drawn with {@link #drawStaticLayer(Canvas, int)}
+     */
+    protected int addStaticLayer(StaticLayer layer) {
+        return mLayerCache.add(layer);
+    }
+
+    /**
+     * Blit the cached static layer in the canvas, rendering it first if the surface size changed or
+     * the layers were invalidated. It must be called in {@link #onDrawOnCanvas(Canvas)}, at the
+     * point where the layer should be drawn.
+     *
+     * @param canvas  canvas to be drawn
+     * @param layerId id of the layer returned by {@link #addStaticLayer(StaticLayer)}
+     */
+    protected void drawStaticLayer(Canvas canvas, int layerId) {
+        mLayerCache.draw(canvas, layerId);
+    }
+
+    /**
+     * Invalidate the static layers, so they are rendered again in the next frame. Children must
+     * call it when a state drawn in a static layer changes. It can be called from any thread.
+     */
+    protected void invalidateStaticLayers() {
+        mLayerCache.invalidate();
+        requestRender();
+    }
+
     /**
      * Get the color from {@link ColorRes} id.
      *
@@ -121,59 +619,186 @@ public abstract class AnimatedSurfaceView extends SurfaceView implements Runnabl
 
     /**
      * Lock the canvas and draw a transparent background. After the draw done by children in {@link
-     * AnimatedSurfaceView#onDrawOnCanvas(Canvas)} unlock and post in the screen.
+     * AnimatedSurfaceView#onDrawOnCanvas(Canvas, long)} unlock and post in the screen.
+     *
+     * @param frameTimeNanos frame time in nanoseconds
      */
-    private void drawOnCanvas() {
+    private void drawOnCanvas(long frameTimeNanos) {
+        final long lockStart = System.nanoTime();
         final Canvas canvas = mHolder.lockCanvas();
+        if (canvas == null) {
+            return;
+        }
+        final long drawStart = System.nanoTime();
         canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
 
-        onDrawOnCanvas(canvas);
+        onDrawOnCanvas(canvas, frameTimeNanos);
 
+        final long drawEnd = System.nanoTime();
         mHolder.unlockCanvasAndPost(canvas);
+        final long postEnd = System.nanoTime();
+
+        mFrameMetrics.record(frameTimeNanos, drawEnd - drawStart,
+                (drawStart - lockStart) + (postEnd - drawEnd), mFrameInterval);
+        reportFrameStats(frameTimeNanos);
+        updateFrameRate(drawEnd - drawStart);
     }
 
-    @Override
-    public void run() {
-        while (mRunning) {
-            if (!mHolder.getSurface().isValid()) {
-                continue;
-            }
-            drawOnCanvas();
-            long delay = (System.currentTimeMillis() - mCurrentTime);
-            mCurrentTime = System.currentTimeMillis();
+    /**
+     * Notify the {@link OnFrameStatsListener}, if the report interval has elapsed.
+     *
+     * @param frameTimeNanos frame time in nanoseconds
+     */
+    private void reportFrameStats(long frameTimeNanos) {
+        final OnFrameStatsListener listener = mFrameStatsListener;
+        if (listener != null
+                && frameTimeNanos - mLastFrameStatsReport >= FRAME_STATS_REPORT_INTERVAL) {
+            mLastFrameStatsReport = frameTimeNanos;
+            listener.onFrameStats(this, mFrameMetrics.snapshot());
+        }
+    }
 
-            try {
-                if (delay < mDelay) {
-                    Thread.sleep(mDelay - delay);
+    /**
+     * Render the frame if the frame deadline of this view was reached. Always called by the {@link
+     * RenderScheduler} thread.
+     *
+     * @param frameTimeNanos vsync frame time in nanoseconds
+     *
+     * @return true if the view needs the next vsync, false if it can wait to be woken up
+     */
+    boolean renderFrame(long frameTimeNanos) {
+        synchronized (mSurfaceLock) {
+            if (!isRendering() || !mHolder.getSurface().isValid()) {
+                return false;
+            }
+            if (mSurfaceSizeChanged) {
+                mSurfaceSizeChanged = false;
+                mLayerCache.resize(mSurfaceWidth, mSurfaceHeight);
+                onSurfaceSizeChanged(mSurfaceWidth, mSurfaceHeight);
+            }
+            final boolean continuously = mRenderMode == RENDER_MODE_CONTINUOUSLY;
+            // No tolerance here: a frame drawn before its scheduled time would show stale state.
+            final boolean scheduled = frameTimeNanos >= mScheduledRenderTime;
+            if (!continuously && !mRenderRequested && !scheduled) {
+                return false;
+            }
+            if (frameTimeNanos >= mNextFrameTime - FRAME_DEADLINE_TOLERANCE) {
+                mRenderRequested = false;
+                if (scheduled) {
+                    mScheduledRenderTime = Long.MAX_VALUE;
                 }
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+                advanceSimulation(frameTimeNanos);
+                drawOnCanvas(frameTimeNanos);
+                mNextFrameTime = frameTimeNanos + mFrameInterval;
+                return continuously || mRenderRequested;
             }
+            return true;
         }
     }
 
     /**
-     * Start the thread on resume the life-cycle.
+     * Get if the view is resumed, has a surface and a visible window, so it should be rendered by
+     * the {@link RenderScheduler}.
+     *
+     * @return true if the view is rendering
+     */
+    boolean isRendering() {
+        return mRunning && mSurfaceReady && mWindowVisible;
+    }
+
+    /**
+     * Register or unregister the view in the {@link RenderScheduler} when its rendering state
+     * changes. Always called by the main thread.
+     */
+    private void updateRendering() {
+        final boolean rendering = isRendering();
+        if (rendering != mRegistered) {
+            mRegistered = rendering;
+            if (!rendering) {
+                mFrameMetrics.resetInterval();
+            } else {
+                mSimulationReset = true;
+            }
+            RenderScheduler.getInstance().update(this);
+        }
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        mWindowVisible = visibility == VISIBLE;
+        updateRendering();
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        mSurfaceReady = true;
+        mRenderRequested = true;
+        updateRendering();
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        mSurfaceWidth = width;
+        mSurfaceHeight = height;
+        mSurfaceSizeChanged = true;
+        requestRender();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        synchronized (mSurfaceLock) {
+            // Waits for the frame being drawn, the surface is not touched after this block.
+            mSurfaceReady = false;
+            mLayerCache.release();
+        }
+        updateRendering();
+    }
+
+    /**
+     * Start rendering the view on resume the life-cycle. The view is registered in the {@link
+     * RenderScheduler} as soon as its surface exists and its window is visible.
      */
     public void resume() {
         mRunning = true;
-        mRenderThread = new Thread(this);
-        mRenderThread.start();
+        mRenderRequested = true;
+        updateRendering();
     }
 
     /**
-     * Pause the thread on pause the life-cycle.
+     * Stop rendering the view on pause the life-cycle.
      */
     public void pause() {
-        boolean retry = true;
         mRunning = false;
-        while (retry) {
-            try {
-                mRenderThread.join();
-                retry = false;
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
+        updateRendering();
+    }
+
+    /**
+     * Part of an {@link AnimatedSurfaceView} that does not change between frames.
+     */
+    public interface StaticLayer {
+
+        /**
+         * Called in the render thread to render the layer into its offscreen bitmap.
+         *
+         * @param canvas canvas of the layer bitmap
+         * @param width  layer width
+         * @param height layer height
+         */
+        void onDrawLayer(Canvas canvas, int width, int height);
+    }
+
+    /**
+     * Listener to be notified with the frame timing statistics of an {@link AnimatedSurfaceView}.
+     */
+    public interface OnFrameStatsListener {
+
+        /**
+         * Called in the render thread with a snapshot of the frame timing statistics.
+         *
+         * @param view  view whose frames were measured
+         * @param stats frame stats snapshot
+         */
+        void onFrameStats(AnimatedSurfaceView view, FrameStats stats);
     }
 }
@@ -9,14 +9,44 @@ import android.graphics.RectF;
 import android.util.AttributeSet;
 
 import com.escodro.viittaus.R;
+import com.escodro.viittaus.audio.WaveformEnvelope;
+import com.escodro.viittaus.time.PlaybackClock;
 
 /**
  * Custom Seek Bar in arc format.
  * <p/>
+ * The track can show the {@link WaveformEnvelope} of the audio around the arc, as a radial line
+ * from the lowest to the highest sample of each segment. The envelope is drawn in the static layer
+ * of the track, so it is only rendered again when it or the seek bar size changes.
+ * <p/>
+ * With a {@link PlaybackClock}, the progress is read from the clock at the time of each frame
+ * instead of being set, so the arc moves smoothly at the frame rate while the player plays, and
+ * the view stops rendering while it is paused.
+ * <p/>
  * Created by Igor Escodro on 17/5/2016.
  */
 public class ArcSeekBar extends AnimatedSurfaceView {
 
+    /**
+     * Quantity of segments of the envelope shown around the arc.
+     */
+    public static final int ENVELOPE_SEGMENT_COUNT = 180;
+
+    /**
+     * Angle where the arc starts, in degrees.
+     */
+    private static final float ARC_START_ANGLE = 157.5F;
+
+    /**
+     * Angle swept by the whole arc, in degrees.
+     */
+    private static final float ARC_SWEEP_ANGLE = 225;
+
+    /**
+     * Height of the envelope at full scale, on each side of the arc, relative to the inner margin.
+     */
+    private static final float ENVELOPE_HEIGHT_RATIO = 0.8F;
+
     /**
      * The primary color of the seek bar.
      */
@@ -27,6 +57,21 @@ public class ArcSeekBar extends AnimatedSurfaceView {
      */
     private Paint mPaintSecondary = null;
 
+    /**
+     * The color of the envelope.
+     */
+    private Paint mPaintEnvelope = null;
+
+    /**
+     * Envelope of the audio shown around the arc, or null.
+     */
+    private volatile WaveformEnvelope mEnvelope;
+
+    /**
+     * Line coordinates (x0, y0, x1, y1) of each envelope segment, submitted in a single draw call.
+     */
+    private float[] mEnvelopeLines;
+
     /**
      * {@link RectF} with the seek bar measures.
      */
@@ -67,6 +112,16 @@ public class ArcSeekBar extends AnimatedSurfaceView {
      */
     private int mSeekBarMargin;
 
+    /**
+     * Clock the progress is read from, or null to use the progress set.
+     */
+    private volatile PlaybackClock mPlaybackClock;
+
+    /**
+     * Id of the static layer with the seek bar background track.
+     */
+    private int mTrackLayer;
+
     /**
      * Create a new instance of {@link ArcSeekBar}.
      *
@@ -107,21 +162,113 @@ public class ArcSeekBar extends AnimatedSurfaceView {
         mPaintSecondary.setStrokeWidth(5);
         mPaintSecondary.setAntiAlias(true);
 
+        mPaintEnvelope = new Paint();
+        mPaintEnvelope.setColor(getColor(R.color.player_gray));
+        mPaintEnvelope.setStyle(Paint.Style.STROKE);
+        mPaintEnvelope.setStrokeWidth(3);
+        mPaintEnvelope.setAntiAlias(true);
+
         mSeekbarArea = new RectF();
+
+        mTrackLayer = addStaticLayer(new StaticLayer() {
+            @Override
+            public void onDrawLayer(Canvas canvas, int width, int height) {
+                updateSeekBarArea(width, height);
+                canvas.drawArc(mSeekbarArea, ARC_START_ANGLE, ARC_SWEEP_ANGLE, false,
+                        mPaintSecondary);
+                drawEnvelope(canvas);
+            }
+        });
+
+        setRenderMode(RENDER_MODE_WHEN_DIRTY);
+    }
+
+    @Override
+    protected void onSurfaceSizeChanged(int width, int height) {
+        updateSeekBarArea(width, height);
+    }
+
+    @Override
+    protected void onDrawOnCanvas(Canvas canvas, long frameTimeNanos) {
+        final PlaybackClock clock = mPlaybackClock;
+        if (clock == null) {
+            onDrawOnCanvas(canvas);
+            return;
+        }
+        final long duration = clock.getDurationMillis();
+        final float progress = duration > 0
+                ? ARC_SWEEP_ANGLE * clock.getPositionMillis(frameTimeNanos) / duration : 0;
+        drawSeekBar(canvas, Math.min(ARC_SWEEP_ANGLE, progress));
+        if (clock.isPlaying()) {
+            requestRender();
+        }
     }
 
     @Override
     protected void onDrawOnCanvas(Canvas canvas) {
-        final int halfWidth = canvas.getWidth() / 2;
-        final int halfHeight = canvas.getHeight() / 2;
+        drawSeekBar(canvas, getProgress());
+    }
+
+    /**
+     * Draw the track and the progress arc.
+     *
+     * @param canvas   canvas to be drawn
+     * @param progress angle of the progress arc, in degrees
+     */
+    private void drawSeekBar(Canvas canvas, float progress) {
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        drawStaticLayer(canvas, mTrackLayer);
+        canvas.drawArc(mSeekbarArea, ARC_START_ANGLE, progress, false, mPaintPrimary);
+    }
+
+    /**
+     * Draw the envelope around the arc, if there is one, with all the segments in a single call.
+     *
+     * @param canvas canvas to be drawn
+     */
+    private void drawEnvelope(Canvas canvas) {
+        final WaveformEnvelope envelope = mEnvelope;
+        if (envelope == null) {
+            return;
+        }
+        final int segments = envelope.getSegmentCount();
+        if (mEnvelopeLines == null || mEnvelopeLines.length != segments * 4) {
+            mEnvelopeLines = new float[segments * 4];
+        }
+
+        final float centerX = mSeekbarArea.centerX();
+        final float centerY = mSeekbarArea.centerY();
+        final float radius = mSeekbarArea.width() / 2;
+        final float height = mSeekBarMargin * ENVELOPE_HEIGHT_RATIO;
+        for (int i = 0; i < segments; i++) {
+            final double angle =
+                    Math.toRadians(ARC_START_ANGLE + (i + 0.5F) * ARC_SWEEP_ANGLE / segments);
+            final float cos = (float) Math.cos(angle);
+            final float sin = (float) Math.sin(angle);
+            final float inner = radius + envelope.getMin(i) * height;
+            final float outer = radius + envelope.getMax(i) * height;
+            mEnvelopeLines[i * 4] = centerX + inner * cos;
+            mEnvelopeLines[i * 4 + 1] = centerY + inner * sin;
+            mEnvelopeLines[i * 4 + 2] = centerX + outer * cos;
+            mEnvelopeLines[i * 4 + 3] = centerY + outer * sin;
+        }
+        canvas.drawLines(mEnvelopeLines, mPaintEnvelope);
+    }
+
+    /**
+     * Update the seek bar area based on the canvas dimensions and the album size.
+     *
+     * @param width  canvas width
+     * @param height canvas height
+     */
+    private void updateSeekBarArea(int width, int height) {
+        final int halfWidth = width / 2;
+        final int halfHeight = height / 2;
         mSeekbarArea.set(
                 halfWidth - mLeftPos,
                 halfHeight - mTopPos,
                 halfWidth + mRightPos,
                 halfHeight + mBottomPos);
-        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-        canvas.drawArc(mSeekbarArea, 157.5F, 225, false, mPaintSecondary);
-        canvas.drawArc(mSeekbarArea, 157.5F, getProgress(), false, mPaintPrimary);
     }
 
     /**
@@ -146,6 +293,27 @@ public class ArcSeekBar extends AnimatedSurfaceView {
         mTopPos = halfAlbumHeight + mSeekBarMargin;
         mRightPos = halfAlbumWidth + mSeekBarMargin;
         mBottomPos = halfAlbumHeight + mSeekBarMargin;
+        invalidateStaticLayers();
+    }
+
+    /**
+     * Sets the envelope of the audio shown around the arc.
+     *
+     * @param envelope envelope with {@link #ENVELOPE_SEGMENT_COUNT} segments, or null to hide it
+     */
+    public void setEnvelope(WaveformEnvelope envelope) {
+        mEnvelope = envelope;
+        invalidateStaticLayers();
+    }
+
+    /**
+     * Sets the clock the progress is read from on every frame, instead of the progress set.
+     *
+     * @param clock playback clock, or null to use the progress set
+     */
+    public void setPlaybackClock(PlaybackClock clock) {
+        mPlaybackClock = clock;
+        requestRender();
     }
 
     /**
@@ -159,6 +327,7 @@ public class ArcSeekBar extends AnimatedSurfaceView {
         } else {
             mMaxProgress = maxProgress;
         }
+        requestRender();
     }
 
     /**
@@ -172,7 +341,10 @@ public class ArcSeekBar extends AnimatedSurfaceView {
         } else if (progress > mMaxProgress) {
             progress = mMaxProgress;
         }
-        mCurrentProgress = progress;
+        if (progress != mCurrentProgress) {
+            mCurrentProgress = progress;
+            requestRender();
+        }
     }
 
     /**
@@ -183,9 +355,9 @@ public class ArcSeekBar extends AnimatedSurfaceView {
     private float getProgress() {
         final float progress;
         if (mCurrentProgress == mMaxProgress) {
-            progress = 225;
+            progress = ARC_SWEEP_ANGLE;
         } else {
-            progress = ((float) 225 / mMaxProgress) * mCurrentProgress;
+            progress = (ARC_SWEEP_ANGLE / mMaxProgress) * mCurrentProgress;
         }
         return progress;
     }
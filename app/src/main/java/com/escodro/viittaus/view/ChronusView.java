@@ -6,17 +6,46 @@ import android.graphics.Paint;
 import android.util.AttributeSet;
 
 import com.escodro.viittaus.R;
+import com.escodro.viittaus.time.ClockHands;
+import com.escodro.viittaus.time.SystemTimeSource;
+import com.escodro.viittaus.time.TimeSource;
+import com.escodro.viittaus.time.TimeZoneReceiver;
 
-import java.util.Calendar;
+import java.util.TimeZone;
 
 /**
  * Custom view to simulate a clock.
  * <p/>
+ * In {@link #HAND_MODE_TICK} the hands jump once per second and the view draws a single frame per
+ * second, aligned to the second boundary. In {@link #HAND_MODE_SWEEP} the seconds hand sweeps and
+ * the view is drawn continuously. Unless a {@link TimeSource} is set, the clock follows the time
+ * zone of the device while it is attached to a window.
+ * <p/>
  * Created by IgorEscodro on 27/11/16.
  */
 
 public class ChronusView extends AnimatedSurfaceView {
 
+    /**
+     * Hand mode where the hands move once per second.
+     */
+    public static final int HAND_MODE_TICK = 0;
+
+    /**
+     * Hand mode where the hands move continuously.
+     */
+    public static final int HAND_MODE_SWEEP = 1;
+
+    /**
+     * Milliseconds in one second.
+     */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /**
+     * Nanoseconds in one millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
     /**
      * Radius of the clock.
      */
@@ -58,6 +87,61 @@ public class ChronusView extends AnimatedSurfaceView {
      */
     private Paint mDefaultPointerPaint;
 
+    /**
+     * Source of the time shown by the clock.
+     */
+    private volatile TimeSource mTimeSource;
+
+    /**
+     * Default source of the time, in the time zone of the device.
+     */
+    private SystemTimeSource mSystemTimeSource;
+
+    /**
+     * Receiver of the changes of the time zone of the device.
+     */
+    private TimeZoneReceiver mTimeZoneReceiver;
+
+    /**
+     * Angles of the clock hands. Only accessed by the render thread.
+     */
+    private ClockHands mClockHands;
+
+    /**
+     * Current hand mode, {@link #HAND_MODE_TICK} or {@link #HAND_MODE_SWEEP}.
+     */
+    private volatile int mHandMode;
+
+    /**
+     * Id of the static layer with the clock dial.
+     */
+    private int mDialLayer;
+
+    /**
+     * Half width of the canvas, the horizontal center of the clock.
+     */
+    private int mHalfWidth;
+
+    /**
+     * Half height of the canvas, the vertical center of the clock.
+     */
+    private int mHalfHeight;
+
+    /**
+     * Vertical coordinate of the hours pointer end.
+     */
+    private int mHoursPointerEnd;
+
+    /**
+     * Vertical coordinate of the minutes and seconds pointers end.
+     */
+    private int mDefaultPointerEnd;
+
+    /**
+     * Vertical coordinate of the seconds pointer tail.
+     */
+    private int mSecondsPointerTail;
+
     /**
      * Create a new instance of {@link ChronusView}
      *
@@ -96,131 +180,144 @@ public class ChronusView extends AnimatedSurfaceView {
         mDefaultPointerPaint.setStrokeWidth(8);
         mDefaultPointerPaint.setAntiAlias(true);
         mDefaultPointerPaint.setColor(getColor(R.color.black));
-    }
 
-    @Override
-    protected void onDrawOnCanvas(Canvas canvas) {
-        final int halfWidth = canvas.getWidth() / 2;
-        final int halfHeight = canvas.getHeight() / 2;
-        final Calendar calendar = Calendar.getInstance();
-
-        final int second = calendar.get(Calendar.SECOND);
-        final int minute = calendar.get(Calendar.MINUTE);
-        final int hour = calendar.get(Calendar.HOUR);
-
-        final int secondAngle = getSecondsAngle(second);
-        final int minuteAngle = getMinutesAngle(minute, second);
-        final int hourAngle = getHoursAngle(hour, minute);
-
-        canvas.drawCircle(halfWidth, halfHeight, CLOCK_RADIUS, mClockBackgroundPaint);
+        mSystemTimeSource = new SystemTimeSource();
+        mTimeSource = mSystemTimeSource;
+        mTimeZoneReceiver = new TimeZoneReceiver(new TimeZoneReceiver.OnTimeZoneChangedListener() {
+            @Override
+            public void onTimeZoneChanged(TimeZone zone) {
+                mSystemTimeSource.setZone(zone);
+                requestRender();
+            }
+        });
+        mClockHands = new ClockHands();
 
-        drawHoursPointer(canvas, hourAngle, halfWidth, halfHeight);
-        drawMinutesPointer(canvas, minuteAngle, halfWidth, halfHeight);
-        drawSecondsPointer(canvas, secondAngle, halfWidth, halfHeight);
+        mDialLayer = addStaticLayer(new StaticLayer() {
+            @Override
+            public void onDrawLayer(Canvas canvas, int width, int height) {
+                canvas.drawCircle(width / 2, height / 2, CLOCK_RADIUS, mClockBackgroundPaint);
+            }
+        });
 
-        canvas.drawCircle(halfWidth, halfHeight, INNER_CIRCLE_RADIUS, mDefaultPointerPaint);
+        setHandMode(HAND_MODE_TICK);
     }
 
     /**
-     * Calculate the second pointer angle in the clock. This angle is the position where the second
-     * pointer will point in the clock.<br> The angle is calculated as follows:
-     * <p/>
-     * [Current second] * ([circumference] / [# of seconds in one hour])
+     * Set the hand mode. {@link #HAND_MODE_TICK} draws only one frame per second, while {@link
+     * #HAND_MODE_SWEEP} draws on every frame deadline.
      *
-     * @param second current system seconds
-     *
-     * @return seconds angle
+     * @param handMode {@link #HAND_MODE_TICK} or {@link #HAND_MODE_SWEEP}
      */
-    private int getSecondsAngle(int second) {
-        return second * (360 / 60);
+    public void setHandMode(int handMode) {
+        mHandMode = handMode;
+        setRenderMode(handMode == HAND_MODE_SWEEP ? RENDER_MODE_CONTINUOUSLY :
+                RENDER_MODE_WHEN_DIRTY);
     }
 
     /**
-     * Calculate the minute pointer angle in the clock. This angle is the position where the minute
-     * pointer will point in the clock.<br> The angle is calculated as follows:
-     * <p/>
-     * <i>[current minute]</i> * (<i>[circumference]</i> / <i>[# of minutes in one hour]</i>) +
-     * (<i>[current second]</i> / (<i>[# of minutes in one hour]</i> / (<i>[circumference]</i> /
-     * <i>[# of seconds in one minute]</i>))
-     * <p/>
-     * The last sum in the equation is to keep the minutes pointer more fluid. It will move slowly
-     * while the seconds pointer is moving, creating a better transition between minutes.
-     *
-     * @param minute current system minutes
-     * @param second current system seconds
+     * Get the current hand mode.
      *
-     * @return minutes angle
+     * @return {@link #HAND_MODE_TICK} or {@link #HAND_MODE_SWEEP}
      */
-    private int getMinutesAngle(int minute, int second) {
-        return minute * (360 / 60) + (second / (60 / (360 / 60)));
+    public int getHandMode() {
+        return mHandMode;
     }
 
     /**
-     * Calculate the hour pointer angle in the clock. This angle is the position where the hour
-     * pointer will point in the clock.<br> The angle is calculated as follows:
-     * <p/>
-     * <i>[current hour]</i> * (<i>[circumference]</i> / <i>[# of hours in one day (AM/PM)]</i>) +
-     * (<i>[current minute]</i> / (<i>[# of hours in one day (AM/PM)]</i> / (<i>[circumference]</i>
-     * / <i>[# of minutes in one hour]</i>))
-     * <p/>
-     * The last sum in the equation is to keep the hours pointer more fluid. It will move slowly
-     * while the minutes pointer is moving, creating a better transition between hours.
+     * Set the source of the time shown by the clock. The source is only called by the render
+     * thread.
      *
-     * @param hour   current system hours
-     * @param minute current system minutes
-     *
-     * @return hour angle
+     * @param timeSource time source
      */
-    private int getHoursAngle(int hour, int minute) {
-        return hour * (360 / 12) + (minute / (12 / (360 / 60)));
+    public void setTimeSource(TimeSource timeSource) {
+        mTimeSource = timeSource;
+        requestRender();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mTimeZoneReceiver.register(getContext());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mTimeZoneReceiver.unregister(getContext());
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onSurfaceSizeChanged(int width, int height) {
+        mHalfWidth = width / 2;
+        mHalfHeight = height / 2;
+        mHoursPointerEnd = mHalfHeight - HOURS_POINTER_HEIGHT;
+        mDefaultPointerEnd = mHalfHeight - DEFAULT_POINTER_HEIGHT;
+        mSecondsPointerTail = mHalfHeight + SECONDS_POINTER_TAIL;
+    }
+
+    @Override
+    protected void onDrawOnCanvas(Canvas canvas) {
+        final TimeSource timeSource = mTimeSource;
+        final long now = timeSource.currentTimeMillis();
+        final long localTime = now + timeSource.getZoneOffset(now);
+        final long millisInSecond = localTime % MILLIS_PER_SECOND;
+        final boolean tick = mHandMode == HAND_MODE_TICK;
+
+        mClockHands.setTime(tick ? localTime - millisInSecond : localTime);
+
+        drawStaticLayer(canvas, mDialLayer);
+
+        drawHoursPointer(canvas, mClockHands.getHourAngle());
+        drawMinutesPointer(canvas, mClockHands.getMinuteAngle());
+        drawSecondsPointer(canvas, mClockHands.getSecondAngle());
+
+        canvas.drawCircle(mHalfWidth, mHalfHeight, INNER_CIRCLE_RADIUS, mDefaultPointerPaint);
+
+        if (tick) {
+            final long delay = MILLIS_PER_SECOND - millisInSecond;
+            requestRenderAt(System.nanoTime() + delay * NANOS_PER_MILLI);
+        }
     }
 
     /**
      * Draw the hours pointer in the clock.
      *
-     * @param canvas     canvas to be drawn
-     * @param hourAngle  the angle of the hour pointer in the clock
-     * @param halfWidth  half width of the canvas
-     * @param halfHeight half height of the canvas
+     * @param canvas    canvas to be drawn
+     * @param hourAngle the angle of the hour pointer in the clock
      */
-    private void drawHoursPointer(Canvas canvas, float hourAngle, int halfWidth, int halfHeight) {
-        final int pointerHeight = halfHeight - HOURS_POINTER_HEIGHT;
+    private void drawHoursPointer(Canvas canvas, float hourAngle) {
         canvas.save();
-        canvas.rotate(hourAngle, halfWidth, halfHeight);
-        canvas.drawLine(halfWidth, halfHeight, halfWidth, pointerHeight, mDefaultPointerPaint);
+        canvas.rotate(hourAngle, mHalfWidth, mHalfHeight);
+        canvas.drawLine(mHalfWidth, mHalfHeight, mHalfWidth, mHoursPointerEnd,
+                mDefaultPointerPaint);
         canvas.restore();
     }
 
     /**
      * Draw the minutes pointer in the clock.
      *
-     * @param canvas     canvas to be drawn
-     * @param minAngle   the angle of the minute pointer in the clock
-     * @param halfWidth  half width of the canvas
-     * @param halfHeight half height of the canvas
+     * @param canvas   canvas to be drawn
+     * @param minAngle the angle of the minute pointer in the clock
      */
-    private void drawMinutesPointer(Canvas canvas, float minAngle, int halfWidth, int halfHeight) {
-        final int pointerHeight = halfHeight - DEFAULT_POINTER_HEIGHT;
+    private void drawMinutesPointer(Canvas canvas, float minAngle) {
         canvas.save();
-        canvas.rotate(minAngle, halfWidth, halfHeight);
-        canvas.drawLine(halfWidth, halfHeight, halfWidth, pointerHeight, mDefaultPointerPaint);
+        canvas.rotate(minAngle, mHalfWidth, mHalfHeight);
+        canvas.drawLine(mHalfWidth, mHalfHeight, mHalfWidth, mDefaultPointerEnd,
+                mDefaultPointerPaint);
         canvas.restore();
     }
 
     /**
      * Draw the seconds pointer in the clock.
      *
-     * @param canvas     canvas to be drawn
-     * @param secAngle   the angle of the second pointer in the clock
-     * @param halfWidth  half width of the canvas
-     * @param halfHeight half height of the canvas
-     */
-    private void drawSecondsPointer(Canvas canvas, float secAngle, int halfWidth, int halfHeight) {
-        final int pointerHeight = halfHeight - DEFAULT_POINTER_HEIGHT;
-        final int pointerTail = halfHeight + SECONDS_POINTER_TAIL;
+     * @param canvas   canvas to be drawn
+     * @param secAngle the angle of the second pointer in the clock
+     */
+    private void drawSecondsPointer(Canvas canvas, float secAngle) {
         canvas.save();
-        canvas.rotate(secAngle, halfWidth, halfHeight);
-        canvas.drawLine(halfWidth, pointerTail, halfWidth, pointerHeight, mSecondPointerPaint);
+        canvas.rotate(secAngle, mHalfWidth, mHalfHeight);
+        canvas.drawLine(mHalfWidth, mSecondsPointerTail, mHalfWidth, mDefaultPointerEnd,
+                mSecondPointerPaint);
         canvas.restore();
     }
 }
@@ -0,0 +1,178 @@
+package com.escodro.viittaus.view;
+
+/**
+ * Collector of the frame timing of an {@link AnimatedSurfaceView}.
+ * <p/>
+ * Recording a frame does not allocate: the frame times are accumulated in running sums and in a
+ * fixed-bucket histogram. A {@link FrameStats} snapshot is only created when requested.
+ */
+final class FrameMetrics {
+
+    /**
+     * Width of each histogram bucket in nanoseconds.
+     */
+    static final long BUCKET_WIDTH = 1000000L;
+
+    /**
+     * Quantity of histogram buckets. The last bucket also holds every frame longer than it.
+     */
+    private static final int BUCKET_COUNT = 64;
+
+    /**
+     * Histogram of the frame time (draw time plus lock/post time).
+     */
+    private final int[] mHistogram = new int[BUCKET_COUNT];
+
+    /**
+     * Quantity of frames recorded.
+     */
+    private long mFrameCount;
+
+    /**
+     * Quantity of frames longer than the frame interval.
+     */
+    private long mMissedDeadlineCount;
+
+    /**
+     * Sum of the draw time of all frames.
+     */
+    private long mTotalDrawTime;
+
+    /**
+     * Maximum draw time.
+     */
+    private long mMaxDrawTime;
+
+    /**
+     * Sum of the lock/post time of all frames.
+     */
+    private long mTotalLockPostTime;
+
+    /**
+     * Maximum lock/post time.
+     */
+    private long mMaxLockPostTime;
+
+    /**
+     * Sum of all the intervals between frames.
+     */
+    private long mTotalFrameInterval;
+
+    /**
+     * Quantity of intervals between frames recorded.
+     */
+    private long mFrameIntervalCount;
+
+    /**
+     * Maximum interval between frames.
+     */
+    private long mMaxFrameInterval;
+
+    /**
+     * Vsync time of the last frame recorded, or zero if there is none.
+     */
+    private long mLastFrameTime;
+
+    /**
+     * Record the timing of a drawn frame.
+     *
+     * @param frameTimeNanos vsync time of the frame
+     * @param drawTime       time spent drawing the frame
+     * @param lockPostTime   time spent locking and posting the canvas
+     * @param frameInterval  expected interval between frames
+     */
+    synchronized void record(long frameTimeNanos, long drawTime, long lockPostTime,
+                             long frameInterval) {
+        final long frameTime = drawTime + lockPostTime;
+
+        mFrameCount++;
+        mTotalDrawTime += drawTime;
+        mTotalLockPostTime += lockPostTime;
+        mMaxDrawTime = Math.max(mMaxDrawTime, drawTime);
+        mMaxLockPostTime = Math.max(mMaxLockPostTime, lockPostTime);
+        if (frameTime > frameInterval) {
+            mMissedDeadlineCount++;
+        }
+
+        if (mLastFrameTime != 0) {
+            final long interval = frameTimeNanos - mLastFrameTime;
+            mTotalFrameInterval += interval;
+            mFrameIntervalCount++;
+            mMaxFrameInterval = Math.max(mMaxFrameInterval, interval);
+        }
+        mLastFrameTime = frameTimeNanos;
+
+        final int bucket = (int) Math.min(frameTime / BUCKET_WIDTH, BUCKET_COUNT - 1);
+        mHistogram[bucket]++;
+    }
+
+    /**
+     * Forget the interval to the last frame, so a pause is not recorded as a long interval.
+     */
+    synchronized void resetInterval() {
+        mLastFrameTime = 0;
+    }
+
+    /**
+     * Clear all the recorded frames.
+     */
+    synchronized void reset() {
+        mFrameCount = 0;
+        mMissedDeadlineCount = 0;
+        mTotalDrawTime = 0;
+        mMaxDrawTime = 0;
+        mTotalLockPostTime = 0;
+        mMaxLockPostTime = 0;
+        mTotalFrameInterval = 0;
+        mFrameIntervalCount = 0;
+        mMaxFrameInterval = 0;
+        mLastFrameTime = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mHistogram[i] = 0;
+        }
+    }
+
+    /**
+     * Create a snapshot of the recorded frames.
+     *
+     * @return frame stats snapshot
+     */
+    synchronized FrameStats snapshot() {
+        final long frames = Math.max(mFrameCount, 1);
+        final long intervals = Math.max(mFrameIntervalCount, 1);
+        return new FrameStats(
+                mFrameCount,
+                mMissedDeadlineCount,
+                mTotalDrawTime / frames,
+                mMaxDrawTime,
+                mTotalLockPostTime / frames,
+                mMaxLockPostTime,
+                mTotalFrameInterval / intervals,
+                mMaxFrameInterval,
+                getPercentile(50),
+                getPercentile(90),
+                getPercentile(99));
+    }
+
+    /**
+     * Get the percentile of the frame time from the histogram, rounded up to the bucket width.
+     *
+     * @param percentile percentile between 0 and 100
+     *
+     * @return frame time percentile in nanoseconds
+     */
+    private long getPercentile(int percentile) {
+        if (mFrameCount == 0) {
+            return 0;
+        }
+        final long threshold = (mFrameCount * percentile + 99) / 100;
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mHistogram[i];
+            if (count >= threshold) {
+                return (i + 1) * BUCKET_WIDTH;
+            }
+        }
+        return BUCKET_COUNT * BUCKET_WIDTH;
+    }
+}
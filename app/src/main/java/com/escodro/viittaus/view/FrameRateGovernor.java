@@ -0,0 +1,129 @@
+package com.escodro.viittaus.view;
+
+/**
+ * Adaptive frame rate governor of an {@link AnimatedSurfaceView}.
+ * <p/>
+ * The governor watches the time spent drawing each frame, without the time blocked waiting for a
+ * buffer of the surface, which only measures the vsync back-pressure. At the end of every
+ * evaluation window (about one second of frames) it lowers the frame rate if too many frames
+ * overran the frame budget, or raises it back towards the target if the average frame time leaves
+ * enough headroom in the budget of the next higher rate. It is only accessed by the render thread.
+ */
+final class FrameRateGovernor {
+
+    /**
+     * Nanoseconds in one second.
+     */
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * Fraction of the frames in a window that may overrun the budget without lowering the rate.
+     */
+    private static final int MAX_OVERRUN_DIVISOR = 10;
+
+    /**
+     * Fraction of the budget the average frame time must stay under to raise the rate.
+     */
+    private static final float HEADROOM_RATIO = 0.5F;
+
+    /**
+     * Factor applied to the frame rate when it is lowered.
+     */
+    private static final float DECREASE_FACTOR = 0.75F;
+
+    /**
+     * Quantity of frame rate steps to go from the minimum back to the target rate.
+     */
+    private static final int INCREASE_STEPS = 5;
+
+    /**
+     * Weight of the newest frame in the average frame time.
+     */
+    private static final float AVERAGE_WEIGHT = 0.125F;
+
+    /**
+     * Frame rate the governor tries to reach.
+     */
+    private int mTargetFrameRate;
+
+    /**
+     * Lowest frame rate the governor can set.
+     */
+    private int mMinFrameRate;
+
+    /**
+     * Frame rate currently set by the governor.
+     */
+    private int mFrameRate;
+
+    /**
+     * Exponential moving average of the frame time in nanoseconds.
+     */
+    private float mAverageFrameTime;
+
+    /**
+     * Quantity of frames in the current evaluation window.
+     */
+    private int mWindowFrames;
+
+    /**
+     * Quantity of frames that overran the budget in the current evaluation window.
+     */
+    private int mWindowOverruns;
+
+    /**
+     * Create a new instance of {@link FrameRateGovernor}.
+     *
+     * @param targetFrameRate frame rate to reach
+     * @param minFrameRate    lowest frame rate allowed
+     */
+    FrameRateGovernor(int targetFrameRate, int minFrameRate) {
+        reset(targetFrameRate, minFrameRate);
+    }
+
+    /**
+     * Reset the governor to the target frame rate.
+     *
+     * @param targetFrameRate frame rate to reach
+     * @param minFrameRate    lowest frame rate allowed
+     */
+    void reset(int targetFrameRate, int minFrameRate) {
+        mTargetFrameRate = targetFrameRate;
+        mMinFrameRate = Math.max(1, Math.min(minFrameRate, targetFrameRate));
+        mFrameRate = targetFrameRate;
+        mAverageFrameTime = 0;
+        mWindowFrames = 0;
+        mWindowOverruns = 0;
+    }
+
+    /**
+     * Record the time spent on a frame and adapt the frame rate at the end of the window.
+     *
+     * @param frameTime time spent on the frame in nanoseconds
+     *
+     * @return the frame rate to be used from now on
+     */
+    int onFrame(long frameTime) {
+        final long budget = NANOS_PER_SECOND / mFrameRate;
+        mAverageFrameTime += (frameTime - mAverageFrameTime) * AVERAGE_WEIGHT;
+        mWindowFrames++;
+        if (frameTime > budget) {
+            mWindowOverruns++;
+        }
+
+        if (mWindowFrames >= mFrameRate) {
+            if (mWindowOverruns > mWindowFrames / MAX_OVERRUN_DIVISOR) {
+                mFrameRate = Math.max(mMinFrameRate, (int) (mFrameRate * DECREASE_FACTOR));
+            } else if (mFrameRate < mTargetFrameRate) {
+                final int step = Math.max(1, (mTargetFrameRate - mMinFrameRate) / INCREASE_STEPS);
+                final int nextFrameRate = Math.min(mTargetFrameRate, mFrameRate + step);
+                if (mAverageFrameTime < HEADROOM_RATIO * NANOS_PER_SECOND / nextFrameRate) {
+                    mFrameRate = nextFrameRate;
+                }
+            }
+            mWindowFrames = 0;
+            mWindowOverruns = 0;
+        }
+        return mFrameRate;
+    }
+}
@@ -0,0 +1,208 @@
+package com.escodro.viittaus.view;
+
+/**
+ * Immutable snapshot of the frame timing statistics of an {@link AnimatedSurfaceView}.
+ * <p/>
+ * All the durations are in nanoseconds. The percentiles are calculated from a fixed-bucket
+ * histogram of the total frame time (draw time plus lock/post time), so they are rounded up to the
+ * bucket resolution of {@link FrameMetrics#BUCKET_WIDTH}.
+ */
+public final class FrameStats {
+
+    /**
+     * Quantity of frames drawn.
+     */
+    private final long mFrameCount;
+
+    /**
+     * Quantity of frames that took longer than the frame interval.
+     */
+    private final long mMissedDeadlineCount;
+
+    /**
+     * Average time spent in {@link AnimatedSurfaceView#onDrawOnCanvas}.
+     */
+    private final long mAverageDrawTime;
+
+    /**
+     * Maximum time spent in {@link AnimatedSurfaceView#onDrawOnCanvas}.
+     */
+    private final long mMaxDrawTime;
+
+    /**
+     * Average time spent locking and posting the canvas.
+     */
+    private final long mAverageLockPostTime;
+
+    /**
+     * Maximum time spent locking and posting the canvas.
+     */
+    private final long mMaxLockPostTime;
+
+    /**
+     * Average interval between two drawn frames.
+     */
+    private final long mAverageFrameInterval;
+
+    /**
+     * Maximum interval between two drawn frames.
+     */
+    private final long mMaxFrameInterval;
+
+    /**
+     * 50th percentile of the frame time.
+     */
+    private final long mFrameTimeP50;
+
+    /**
+     * 90th percentile of the frame time.
+     */
+    private final long mFrameTimeP90;
+
+    /**
+     * 99th percentile of the frame time.
+     */
+    private final long mFrameTimeP99;
+
+    /**
+     * Create a new instance of {@link FrameStats}.
+     *
+     * @param frameCount           quantity of frames drawn
+     * @param missedDeadlineCount  quantity of frames longer than the frame interval
+     * @param averageDrawTime      average draw time
+     * @param maxDrawTime          maximum draw time
+     * @param averageLockPostTime  average lock/post time
+     * @param maxLockPostTime      maximum lock/post time
+     * @param averageFrameInterval average interval between frames
+     * @param maxFrameInterval     maximum interval between frames
+     * @param frameTimeP50         50th percentile of the frame time
+     * @param frameTimeP90         90th percentile of the frame time
+     * @param frameTimeP99         99th percentile of the frame time
+     */
+    FrameStats(long frameCount, long missedDeadlineCount, long averageDrawTime, long maxDrawTime,
+               long averageLockPostTime, long maxLockPostTime, long averageFrameInterval,
+               long maxFrameInterval, long frameTimeP50, long frameTimeP90, long frameTimeP99) {
+        mFrameCount = frameCount;
+        mMissedDeadlineCount = missedDeadlineCount;
+        mAverageDrawTime = averageDrawTime;
+        mMaxDrawTime = maxDrawTime;
+        mAverageLockPostTime = averageLockPostTime;
+        mMaxLockPostTime = maxLockPostTime;
+        mAverageFrameInterval = averageFrameInterval;
+        mMaxFrameInterval = maxFrameInterval;
+        mFrameTimeP50 = frameTimeP50;
+        mFrameTimeP90 = frameTimeP90;
+        mFrameTimeP99 = frameTimeP99;
+    }
+
+    /**
+     * Get the quantity of frames drawn.
+     *
+     * @return quantity of frames
+     */
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Get the quantity of frames that took longer than the frame interval to be drawn and posted.
+     *
+     * @return quantity of missed deadlines
+     */
+    public long getMissedDeadlineCount() {
+        return mMissedDeadlineCount;
+    }
+
+    /**
+     * Get the average time spent drawing the frame.
+     *
+     * @return average draw time in nanoseconds
+     */
+    public long getAverageDrawTime() {
+        return mAverageDrawTime;
+    }
+
+    /**
+     * Get the maximum time spent drawing a frame.
+     *
+     * @return maximum draw time in nanoseconds
+     */
+    public long getMaxDrawTime() {
+        return mMaxDrawTime;
+    }
+
+    /**
+     * Get the average time spent locking and posting the canvas.
+     *
+     * @return average lock/post time in nanoseconds
+     */
+    public long getAverageLockPostTime() {
+        return mAverageLockPostTime;
+    }
+
+    /**
+     * Get the maximum time spent locking and posting the canvas.
+     *
+     * @return maximum lock/post time in nanoseconds
+     */
+    public long getMaxLockPostTime() {
+        return mMaxLockPostTime;
+    }
+
+    /**
+     * Get the average interval between two drawn frames.
+     *
+     * @return average frame interval in nanoseconds
+     */
+    public long getAverageFrameInterval() {
+        return mAverageFrameInterval;
+    }
+
+    /**
+     * Get the maximum interval between two drawn frames.
+     *
+     * @return maximum frame interval in nanoseconds
+     */
+    public long getMaxFrameInterval() {
+        return mMaxFrameInterval;
+    }
+
+    /**
+     * Get the 50th percentile of the frame time.
+     *
+     * @return 50th percentile in nanoseconds
+     */
+    public long getFrameTimeP50() {
+        return mFrameTimeP50;
+    }
+
+    /**
+     * Get the 90th percentile of the frame time.
+     *
+     * @return 90th percentile in nanoseconds
+     */
+    public long getFrameTimeP90() {
+        return mFrameTimeP90;
+    }
+
+    /**
+     * Get the 99th percentile of the frame time.
+     *
+     * @return 99th percentile in nanoseconds
+     */
+    public long getFrameTimeP99() {
+        return mFrameTimeP99;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameStats{frames=" + mFrameCount
+                + ", missed=" + mMissedDeadlineCount
+                + ", draw=" + mAverageDrawTime + "/" + mMaxDrawTime
+                + ", lockPost=" + mAverageLockPostTime + "/" + mMaxLockPostTime
+                + ", interval=" + mAverageFrameInterval + "/" + mMaxFrameInterval
+                + ", p50=" + mFrameTimeP50
+                + ", p90=" + mFrameTimeP90
+                + ", p99=" + mFrameTimeP99 + "}";
+    }
+}
@@ -0,0 +1,142 @@
+package com.escodro.viittaus.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Cache of the {@link AnimatedSurfaceView.StaticLayer}s of an {@link AnimatedSurfaceView}.
+ * <p/>
+ * Each layer is rendered once into an offscreen {@link Bitmap} with the surface size and then only
+ * blitted in the following frames, until the surface size changes or the layers are invalidated.
+ * The layers are added while the view is created; except for {@link #invalidate()}, the cache is
+ * then only accessed by the render thread or while holding the surface lock.
+ */
+final class LayerCache {
+
+    /**
+     * Layers declared by the view.
+     */
+    private final ArrayList<AnimatedSurfaceView.StaticLayer> mLayers;
+
+    /**
+     * Canvas used to render the layers into their bitmaps.
+     */
+    private final Canvas mLayerCanvas;
+
+    /**
+     * Rendered bitmap of each layer, or null if not rendered yet.
+     */
+    private Bitmap[] mBitmaps;
+
+    /**
+     * Boolean for each layer to represent if its bitmap has the layer rendered.
+     */
+    private boolean[] mValid;
+
+    /**
+     * Width of the layers.
+     */
+    private int mWidth;
+
+    /**
+     * Height of the layers.
+     */
+    private int mHeight;
+
+    /**
+     * Boolean to represent if the layers must be rendered again.
+     */
+    private volatile boolean mInvalidated;
+
+    /**
+     * Create a new instance of {@link LayerCache}.
+     */
+    LayerCache() {
+        mLayers = new ArrayList<>();
+        mLayerCanvas = new Canvas();
+        mBitmaps = new Bitmap[0];
+        mValid = new boolean[0];
+    }
+
+    /**
+     * Add a layer to the cache.
+     *
+     * @param layer layer to be added
+     *
+     * @return id of the layer
+     */
+    int add(AnimatedSurfaceView.StaticLayer layer) {
+        mLayers.add(layer);
+        return mLayers.size() - 1;
+    }
+
+    /**
+     * Set the size of the layers, releasing the bitmaps rendered with the previous size.
+     *
+     * @param width  layers width
+     * @param height layers height
+     */
+    void resize(int width, int height) {
+        release();
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Invalidate all the layers, so they are rendered again before being drawn. It can be called
+     * from any thread.
+     */
+    void invalidate() {
+        mInvalidated = true;
+    }
+
+    /**
+     * Draw the layer in the canvas, rendering it first if needed.
+     *
+     * @param canvas  canvas to be drawn
+     * @param layerId id of the layer returned by {@link #add(AnimatedSurfaceView.StaticLayer)}
+     */
+    void draw(Canvas canvas, int layerId) {
+        if (mWidth <= 0 || mHeight <= 0) {
+            return;
+        }
+        if (mBitmaps.length != mLayers.size()) {
+            release();
+        }
+        if (mInvalidated) {
+            mInvalidated = false;
+            Arrays.fill(mValid, false);
+        }
+
+        Bitmap bitmap = mBitmaps[layerId];
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+            mBitmaps[layerId] = bitmap;
+        }
+        if (!mValid[layerId]) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            mLayerCanvas.setBitmap(bitmap);
+            mLayers.get(layerId).onDrawLayer(mLayerCanvas, mWidth, mHeight);
+            mLayerCanvas.setBitmap(null);
+            mValid[layerId] = true;
+        }
+        canvas.drawBitmap(bitmap, 0, 0, null);
+    }
+
+    /**
+     * Release all the rendered bitmaps.
+     */
+    void release() {
+        for (Bitmap bitmap : mBitmaps) {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+        mBitmaps = new Bitmap[mLayers.size()];
+        mValid = new boolean[mLayers.size()];
+    }
+}
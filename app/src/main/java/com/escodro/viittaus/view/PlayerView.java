@@ -10,6 +10,7 @@ import android.widget.RelativeLayout;
 
 import com.escodro.viittaus.R;
 import com.escodro.viittaus.adapter.PlayerAdapter;
+import com.escodro.viittaus.audio.SpectrumBus;
 
 /**
  * Custom view to represent a audio player.
@@ -119,6 +120,23 @@ public class PlayerView extends RelativeLayout implements ViewTreeObserver.OnGlo
         mAdapter.setArtistName(artistName);
     }
 
+    /**
+     * Starts capturing the spectrum of the audio output, after the record audio permission is
+     * granted.
+     */
+    public void onRecordAudioPermissionGranted() {
+        mAdapter.startSpectrumCapture();
+    }
+
+    /**
+     * Gets the bus with the spectrum of the audio output, to be shown by other visualizers.
+     *
+     * @return the spectrum bus
+     */
+    public SpectrumBus getSpectrumBus() {
+        return mAdapter.getSpectrumBus();
+    }
+
     @Override
     public void onGlobalLayout() {
         mAdapter.onViewLoaded();
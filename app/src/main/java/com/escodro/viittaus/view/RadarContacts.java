@@ -0,0 +1,332 @@
+package com.escodro.viittaus.view;
+
+import com.escodro.viittaus.util.IntIntMap;
+
+/**
+ * Contacts shown by a {@link RadarView}, stored in primitive parallel arrays.
+ * <p/>
+ * Each contact is identified by an id and has a bearing, in degrees clockwise from the top of the
+ * radar, a range between 0 (center) and 1 (border) and an intensity between 0 and 1. The contacts
+ * can be changed from any thread. The render thread packs their positions into a point array
+ * sorted by intensity class and by angle bucket, so the contacts of a range of bearings are drawn
+ * with a single call, without touching each contact in every frame. The packed array is only
+ * rebuilt after the contacts change, and nothing is allocated after the contacts are created.
+ * <p/>
+ * The direction and the run of each contact are computed when it is written, so rebuilding the
+ * packed array only scales and copies, without trigonometry, even when the contacts are streamed
+ * and change in almost every frame.
+ */
+public class RadarContacts {
+
+    /**
+     * Quantity of angle buckets, of one degree each.
+     */
+    static final int BUCKET_COUNT = 360;
+
+    /**
+     * Quantity of intensity classes the contacts are drawn with.
+     */
+    static final int INTENSITY_CLASSES = 4;
+
+    /**
+     * Quantity of coordinates of a point in the packed array.
+     */
+    private static final int POINT_COORDINATES = 2;
+
+    /**
+     * Id of each contact.
+     */
+    private final int[] mIds;
+
+    /**
+     * Index of each contact by id.
+     */
+    private final IntIntMap mIndexes;
+
+    /**
+     * Bearing of each contact, in degrees.
+     */
+    private final float[] mBearings;
+
+    /**
+     * Range of each contact, between 0 and 1.
+     */
+    private final float[] mRanges;
+
+    /**
+     * Intensity of each contact, between 0 and 1.
+     */
+    private final float[] mIntensities;
+
+    /**
+     * Horizontal component of the unit vector of the bearing of each contact.
+     */
+    private final float[] mDirectionsX;
+
+    /**
+     * Vertical component of the unit vector of the bearing of each contact, positive to the top.
+     */
+    private final float[] mDirectionsY;
+
+    /**
+     * Run (intensity class and bucket) of each contact in the packed array.
+     */
+    private final int[] mRuns;
+
+    /**
+     * Packed points of the contacts, sorted by intensity class and bucket. Only accessed by the
+     * render thread.
+     */
+    private final float[] mPoints;
+
+    /**
+     * Index of the first packed point of each intensity class and bucket, plus the total. Only
+     * accessed by the render thread.
+     */
+    private final int[] mRunStart;
+
+    /**
+     * Quantity of contacts.
+     */
+    private int mSize;
+
+    /**
+     * Boolean to represent if the contacts changed since they were packed.
+     */
+    private volatile boolean mChanged;
+
+    /**
+     * Create a new instance of {@link RadarContacts}.
+     *
+     * @param capacity maximum quantity of contacts
+     */
+    public RadarContacts(int capacity) {
+        mIds = new int[capacity];
+        mIndexes = new IntIntMap(capacity);
+        mBearings = new float[capacity];
+        mRanges = new float[capacity];
+        mIntensities = new float[capacity];
+        mDirectionsX = new float[capacity];
+        mDirectionsY = new float[capacity];
+        mRuns = new int[capacity];
+        mPoints = new float[capacity * POINT_COORDINATES];
+        mRunStart = new int[INTENSITY_CLASSES * BUCKET_COUNT + 1];
+    }
+
+    /**
+     * Add a contact, or change it if a contact with the same id exists.
+     *
+     * @param id        id of the contact
+     * @param bearing   bearing in degrees, clockwise from the top
+     * @param range     range between 0 and 1
+     * @param intensity intensity between 0 and 1
+     *
+     * @return true if the contact was set, false if it is new and the capacity was reached
+     */
+    public synchronized boolean put(int id, float bearing, float range, float intensity) {
+        return write(id, bearing, range, intensity);
+    }
+
+    /**
+     * Remove a contact.
+     *
+     * @param id id of the contact
+     *
+     * @return true if the contact was removed, false if there is no contact with the id
+     */
+    public synchronized boolean remove(int id) {
+        return delete(id);
+    }
+
+    /**
+     * Apply a batch of contact updates, in the format of {@link
+     * RadarView#offerContactUpdates(int[], int, int)}, holding the lock only once.
+     *
+     * @param updates array with the updates
+     * @param offset  index of the first update value in the array
+     * @param count   quantity of updates
+     */
+    synchronized void apply(int[] updates, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            final int index = offset + i * RadarView.CONTACT_UPDATE_SIZE;
+            final int id = updates[index];
+            final float intensity = Float.intBitsToFloat(updates[index + 3]);
+            if (intensity < 0) {
+                delete(id);
+            } else {
+                write(id, Float.intBitsToFloat(updates[index + 1]),
+                        Float.intBitsToFloat(updates[index + 2]), intensity);
+            }
+        }
+    }
+
+    /**
+     * Remove all the contacts.
+     */
+    public synchronized void clear() {
+        mIndexes.clear();
+        mSize = 0;
+        mChanged = true;
+    }
+
+    /**
+     * Get the quantity of contacts.
+     *
+     * @return quantity of contacts
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Get the maximum quantity of contacts.
+     *
+     * @return capacity
+     */
+    public int capacity() {
+        return mBearings.length;
+    }
+
+    /**
+     * Write the values of a contact, normalized, adding it if needed, with its direction and run,
+     * and mark the contacts as changed.
+     *
+     * @param id        id of the contact
+     * @param bearing   bearing in degrees
+     * @param range     range between 0 and 1
+     * @param intensity intensity between 0 and 1
+     *
+     * @return true if the contact was written, false if it is new and the capacity was reached
+     */
+    private boolean write(int id, float bearing, float range, float intensity) {
+        int index = mIndexes.get(id);
+        if (index == IntIntMap.NO_VALUE) {
+            if (mSize == mIds.length) {
+                return false;
+            }
+            index = mSize++;
+            mIds[index] = id;
+            mIndexes.put(id, index);
+        }
+        float normalizedBearing = bearing % 360;
+        if (normalizedBearing < 0) {
+            normalizedBearing += 360;
+        }
+        mBearings[index] = normalizedBearing;
+        mRanges[index] = Math.max(0, Math.min(1, range));
+        mIntensities[index] = Math.max(0, Math.min(1, intensity));
+        final double radians = Math.toRadians(normalizedBearing);
+        mDirectionsX[index] = (float) Math.sin(radians);
+        mDirectionsY[index] = (float) Math.cos(radians);
+        mRuns[index] = getRun(index);
+        mChanged = true;
+        return true;
+    }
+
+    /**
+     * Remove a contact, moving the last contact to its index, and mark the contacts as changed.
+     *
+     * @param id id of the contact
+     *
+     * @return true if the contact was removed, false if there is no contact with the id
+     */
+    private boolean delete(int id) {
+        final int index = mIndexes.remove(id);
+        if (index == IntIntMap.NO_VALUE) {
+            return false;
+        }
+        final int last = --mSize;
+        if (index != last) {
+            mIds[index] = mIds[last];
+            mBearings[index] = mBearings[last];
+            mRanges[index] = mRanges[last];
+            mIntensities[index] = mIntensities[last];
+            mDirectionsX[index] = mDirectionsX[last];
+            mDirectionsY[index] = mDirectionsY[last];
+            mRuns[index] = mRuns[last];
+            mIndexes.put(mIds[index], index);
+        }
+        mChanged = true;
+        return true;
+    }
+
+    /**
+     * Get if the contacts changed since they were last packed.
+     *
+     * @return true if {@link #pack(float, float, float)} must be called
+     */
+    boolean hasChanged() {
+        return mChanged;
+    }
+
+    /**
+     * Pack the contact positions for the radar geometry, sorted by intensity class and bucket with
+     * a counting sort, scaling the direction computed when each contact was written. Always called
+     * by the render thread.
+     *
+     * @param centerX center x of the radar
+     * @param centerY center y of the radar
+     * @param radius  radius of the radar
+     */
+    synchronized void pack(float centerX, float centerY, float radius) {
+        mChanged = false;
+        final int[] runStart = mRunStart;
+        for (int i = 0; i < runStart.length; i++) {
+            runStart[i] = 0;
+        }
+        final int[] runs = mRuns;
+        for (int i = 0; i < mSize; i++) {
+            runStart[runs[i] + 1]++;
+        }
+        for (int run = 1; run < runStart.length; run++) {
+            runStart[run] += runStart[run - 1];
+        }
+        for (int i = 0; i < mSize; i++) {
+            // The run start is used as the insertion cursor, and shifted back below.
+            final int point = runStart[runs[i]]++;
+            final float distance = mRanges[i] * radius;
+            mPoints[point * POINT_COORDINATES] = centerX + distance * mDirectionsX[i];
+            mPoints[point * POINT_COORDINATES + 1] = centerY - distance * mDirectionsY[i];
+        }
+        for (int run = runStart.length - 1; run > 0; run--) {
+            runStart[run] = runStart[run - 1];
+        }
+        runStart[0] = 0;
+    }
+
+    /**
+     * Compute the run (intensity class and bucket) of a contact in the packed array.
+     *
+     * @param index index of the contact
+     *
+     * @return run index
+     */
+    private int getRun(int index) {
+        final int intensityClass =
+                Math.min(INTENSITY_CLASSES - 1, (int) (mIntensities[index] * INTENSITY_CLASSES));
+        final int bucket = Math.min(BUCKET_COUNT - 1, (int) mBearings[index]);
+        return intensityClass * BUCKET_COUNT + bucket;
+    }
+
+    /**
+     * Get the packed points, in x and y pairs. Only valid in the render thread after {@link
+     * #pack(float, float, float)}.
+     *
+     * @return packed points
+     */
+    float[] getPoints() {
+        return mPoints;
+    }
+
+    /**
+     * Get the index of the first packed point of an intensity class and bucket.
+     *
+     * @param intensityClass intensity class
+     * @param bucket         bucket, between 0 and {@link #BUCKET_COUNT} (exclusive end)
+     *
+     * @return index of the first point
+     */
+    int getRunStart(int intensityClass, int bucket) {
+        return mRunStart[intensityClass * BUCKET_COUNT + bucket];
+    }
+}
@@ -1,31 +1,116 @@
 package com.escodro.viittaus.view;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
 import android.graphics.SweepGradient;
 import android.util.AttributeSet;
 
 import com.escodro.viittaus.R;
+import com.escodro.viittaus.util.IntSpscQueue;
 
 /**
  * Custom view to simulate a radar.
  * <p/>
+ * The radar shows the {@link RadarContacts} returned by {@link #getContacts()}. Each contact fades
+ * with the time since the sweep passed its bearing. Since the contacts are packed by bearing, a
+ * frame draws the contacts of each intensity class and fade level with a single call, whatever the
+ * quantity of contacts.
+ * <p/>
+ * In the persistence mode the sweep leaves a phosphor-like trail: the radar is accumulated in an
+ * offscreen bitmap, which each frame only fades and stamps with the wedge swept and the contacts
+ * hit since the previous frame. The cost of a frame then does not depend on the length of the
+ * trail or on the quantity of contacts painted.
+ * <p/>
  * Created by IgorEscodro on 13/11/16.
  */
 
 public class RadarView extends AnimatedSurfaceView {
 
     /**
-     * Progress of the radar in degrees for each frame.
+     * Quantity of values of each update in {@link #offerContactUpdates(int[], int, int)}.
+     */
+    public static final int CONTACT_UPDATE_SIZE = 4;
+
+    /**
+     * Quantity of contact updates the channel to the render thread can hold.
+     */
+    private static final int CHANNEL_UPDATES = 4096;
+
+    /**
+     * Quantity of contact updates drained from the channel at a time.
+     */
+    private static final int DRAIN_UPDATES = 512;
+
+    /**
+     * Speed of the radar sweep in degrees per second.
+     */
+    private static final float SWEEP_SPEED = 150F;
+
+    /**
+     * Default maximum quantity of contacts.
+     */
+    private static final int DEFAULT_CONTACT_CAPACITY = 10000;
+
+    /**
+     * Quantity of fade levels a contact goes through in one turn of the sweep.
+     */
+    private static final int FADE_LEVELS = 24;
+
+    /**
+     * Quantity of angle buckets in each fade level.
+     */
+    private static final int BUCKETS_PER_FADE_LEVEL = RadarContacts.BUCKET_COUNT / FADE_LEVELS;
+
+    /**
+     * Time for the brightness of a contact to drop to about a third, in seconds.
+     */
+    private static final float CONTACT_FADE_TIME = 1F;
+
+    /**
+     * Angle of the canvas rotation where the sweep points to the top of the radar.
+     */
+    private static final float TOP_ANGLE = -90F;
+
+    /**
+     * Time for the trail of the persistence mode to drop to about a third of its brightness, in
+     * seconds.
+     */
+    private static final float PERSISTENCE_TIME = 1.2F;
+
+    /**
+     * Alpha removed from the accumulation bitmap by each fade step. It is high enough that the
+     * rounding of the fade does not leave a visible residue of the trail.
+     */
+    private static final int FADE_STEP_ALPHA = 24;
+
+    /**
+     * Interval between two fade steps of the accumulation bitmap, in nanoseconds.
+     */
+    private static final long FADE_STEP_INTERVAL =
+            (long) (-PERSISTENCE_TIME * Math.log(1 - FADE_STEP_ALPHA / 255.0) * 1000000000L);
+
+    /**
+     * Quantity of fade steps after which the trail is fully faded, so a late frame clears the
+     * accumulation bitmap instead of fading it step by step.
+     */
+    private static final int MAX_FADE_STEPS = 32;
+
+    /**
+     * Angle of the radar after the last simulation step.
      */
-    private static final int PROGRESS = 5;
+    private float mCurrentAngle = 60;
 
     /**
-     * Integer to control de rotation of the radar.
+     * Angle of the radar before the last simulation step.
      */
-    private int mCurrentAngle = 60;
+    private float mPreviousAngle = 60;
 
     /**
      * Paint of the radar.
@@ -42,6 +127,98 @@ public class RadarView extends AnimatedSurfaceView {
      */
     private Paint mLinesPaint;
 
+    /**
+     * Paint of the contacts.
+     */
+    private Paint mContactPaint;
+
+    /**
+     * Contacts shown in the radar.
+     */
+    private RadarContacts mContacts;
+
+    /**
+     * Channel with the contact updates offered to the render thread.
+     */
+    private IntSpscQueue mContactChannel;
+
+    /**
+     * Buffer used by the render thread to drain the contact channel.
+     */
+    private int[] mDrainBuffer;
+
+    /**
+     * Alpha of the contacts for each intensity class and fade level.
+     */
+    private int[] mContactAlphas;
+
+    /**
+     * Boolean to represent if the contacts must be packed for the current geometry. Only accessed
+     * by the render thread.
+     */
+    private boolean mContactsPacked;
+
+    /**
+     * Boolean to represent if the persistence mode is enabled.
+     */
+    private volatile boolean mPersistenceEnabled;
+
+    /**
+     * Offscreen bitmap where the persistence mode accumulates the sweep, or null. Only accessed by
+     * the render thread.
+     */
+    private Bitmap mAccumulation;
+
+    /**
+     * Canvas used to draw into the accumulation bitmap.
+     */
+    private Canvas mAccumulationCanvas;
+
+    /**
+     * Paint that fades the accumulation bitmap.
+     */
+    private Paint mFadePaint;
+
+    /**
+     * Paint of the wedge stamped in the accumulation bitmap.
+     */
+    private Paint mWedgePaint;
+
+    /**
+     * Paint of the radar background in the persistence mode.
+     */
+    private Paint mBackgroundPaint;
+
+    /**
+     * Width of the surface.
+     */
+    private int mWidth;
+
+    /**
+     * Height of the surface.
+     */
+    private int mHeight;
+
+    /**
+     * Beam bearing stamped in the accumulation bitmap in the last frame.
+     */
+    private float mLastStampBearing;
+
+    /**
+     * Frame time of the last fade step of the accumulation bitmap, in nanoseconds.
+     */
+    private long mLastFadeTime;
+
+    /**
+     * Id of the static layer with the radar background of the persistence mode.
+     */
+    private int mBackgroundLayer;
+
+    /**
+     * {@link Path} with all the radar lines, built for the surface size and drawn in a single call.
+     */
+    private Path mLinesPath;
+
     /**
      * {@link RectF} with the radar dimensions.
      */
@@ -62,6 +239,26 @@ public class RadarView extends AnimatedSurfaceView {
      */
     private int radarBorderWidth;
 
+    /**
+     * Half width of the canvas, the horizontal center of the radar.
+     */
+    private int mHalfWidth;
+
+    /**
+     * Half height of the canvas, the vertical center of the radar.
+     */
+    private int mHalfHeight;
+
+    /**
+     * Radius of the radar.
+     */
+    private int mHalfRadius;
+
+    /**
+     * Id of the static layer with the radar border and lines.
+     */
+    private int mOverlayLayer;
+
     /**
      * Create a new instance of {@link RadarView}
      *
@@ -99,6 +296,32 @@ public class RadarView extends AnimatedSurfaceView {
         mLinesPaint.setAntiAlias(true);
         mLinesPaint.setColor(getColor(R.color.radar_red_light));
 
+        mContactPaint = new Paint();
+        mContactPaint.setStyle(Paint.Style.STROKE);
+        mContactPaint.setStrokeCap(Paint.Cap.ROUND);
+        mContactPaint.setAntiAlias(true);
+        mContactPaint.setColor(getColor(R.color.radar_contact));
+
+        mFadePaint = new Paint();
+        mFadePaint.setColor(Color.BLACK);
+        mFadePaint.setAlpha(FADE_STEP_ALPHA);
+        mFadePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
+
+        mWedgePaint = new Paint();
+        mWedgePaint.setAntiAlias(true);
+        mWedgePaint.setColor(getColor(R.color.radar_red));
+
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setAntiAlias(true);
+        mBackgroundPaint.setColor(getColor(R.color.radar_red_dark));
+
+        mAccumulationCanvas = new Canvas();
+        mContacts = new RadarContacts(DEFAULT_CONTACT_CAPACITY);
+        mContactChannel = new IntSpscQueue(CHANNEL_UPDATES * CONTACT_UPDATE_SIZE);
+        mDrainBuffer = new int[DRAIN_UPDATES * CONTACT_UPDATE_SIZE];
+        mContactAlphas = createContactAlphas();
+
+        mLinesPath = new Path();
         mRadarRect = new RectF();
         mBorderRect = new RectF();
 
@@ -106,121 +329,373 @@ public class RadarView extends AnimatedSurfaceView {
                 getColor(R.color.radar_red_dark),
                 getColor(R.color.radar_red)};
 
+        mOverlayLayer = addStaticLayer(new StaticLayer() {
+            @Override
+            public void onDrawLayer(Canvas canvas, int width, int height) {
+                drawOverlay(canvas);
+            }
+        });
+        mBackgroundLayer = addStaticLayer(new StaticLayer() {
+            @Override
+            public void onDrawLayer(Canvas canvas, int width, int height) {
+                canvas.drawArc(mRadarRect, 0, 360, true, mBackgroundPaint);
+            }
+        });
     }
 
     @Override
-    protected void onDrawOnCanvas(Canvas canvas) {
-        final int halfWidth = canvas.getWidth() / 2;
-        final int halfHeight = canvas.getHeight() / 2;
-        final int smallerDimension = getSmallestDimension(canvas);
-        final int halfRadius = smallerDimension / 3;
-        final int mLinesRadarWidth = smallerDimension / 128;
+    protected void onSurfaceSizeChanged(int width, int height) {
+        final int smallerDimension = getSmallestDimension(width, height);
+        mWidth = width;
+        mHeight = height;
+        mHalfWidth = width / 2;
+        mHalfHeight = height / 2;
+        mHalfRadius = smallerDimension / 3;
         radarBorderWidth = smallerDimension / 32;
 
         mBorderPaint.setStrokeWidth(radarBorderWidth);
-        mLinesPaint.setStrokeWidth(mLinesRadarWidth);
+        mLinesPaint.setStrokeWidth(smallerDimension / 128);
+        mContactPaint.setStrokeWidth(Math.max(1, smallerDimension / 96));
+        mRadarPaint.setShader(new SweepGradient(mHalfWidth, mHalfHeight, mRadarColors, null));
+
+        mRadarRect.set(
+                mHalfWidth - mHalfRadius,
+                mHalfHeight - mHalfRadius,
+                mHalfWidth + mHalfRadius,
+                mHalfHeight + mHalfRadius);
+        mBorderRect.set(
+                mHalfWidth - mHalfRadius - (radarBorderWidth / 2),
+                mHalfHeight - mHalfRadius - (radarBorderWidth / 2),
+                mHalfWidth + mHalfRadius + (radarBorderWidth / 2),
+                mHalfHeight + mHalfRadius + (radarBorderWidth / 2));
+        updateLinesPath();
+        mContactsPacked = false;
+        releaseAccumulation();
+    }
+
+    /**
+     * Offer a batch of contact updates to the render thread, which applies them to the contacts
+     * before its next frame. Each update has {@link #CONTACT_UPDATE_SIZE} values: the contact id
+     * and the raw int bits ({@link Float#floatToRawIntBits(float)}) of its bearing, range and
+     * intensity. An update with a negative intensity removes the contact.
+     * <p/>
+     * It never blocks: when the render thread falls behind, the updates that do not fit in the
+     * channel are rejected. It must only be called by one thread at a time.
+     *
+     * @param updates array with the updates
+     * @param offset  index of the first update value in the array
+     * @param count   quantity of updates
+     *
+     * @return quantity of updates accepted
+     */
+    public int offerContactUpdates(int[] updates, int offset, int count) {
+        final int freeValues = mContactChannel.capacity() - mContactChannel.size();
+        final int accepted = Math.min(freeValues / CONTACT_UPDATE_SIZE, count);
+        mContactChannel.offer(updates, offset, accepted * CONTACT_UPDATE_SIZE);
+        return accepted;
+    }
+
+    /**
+     * Apply the contact updates waiting in the channel. At most one channel of updates is applied
+     * per frame, so a producer faster than the render thread can not stall it.
+     */
+    private void drainContactUpdates() {
+        int remaining = mContactChannel.capacity();
+        while (remaining > 0) {
+            final int polled = mContactChannel.poll(mDrainBuffer, 0,
+                    Math.min(remaining, mDrainBuffer.length));
+            if (polled == 0) {
+                return;
+            }
+            mContacts.apply(mDrainBuffer, 0, polled / CONTACT_UPDATE_SIZE);
+            remaining -= polled;
+        }
+    }
+
+    /**
+     * Enable or disable the persistence mode, where the sweep leaves a fading trail and the
+     * contacts stay lit from the moment the sweep hits them.
+     *
+     * @param enabled true to enable the persistence mode
+     */
+    public void setPersistenceEnabled(boolean enabled) {
+        mPersistenceEnabled = enabled;
+        requestRender();
+    }
+
+    /**
+     * Get if the persistence mode is enabled.
+     *
+     * @return true if the persistence mode is enabled
+     */
+    public boolean isPersistenceEnabled() {
+        return mPersistenceEnabled;
+    }
+
+    /**
+     * Get the contacts shown in the radar. They can be changed from any thread.
+     *
+     * @return radar contacts
+     */
+    public RadarContacts getContacts() {
+        return mContacts;
+    }
 
-        mCurrentAngle += PROGRESS;
+    @Override
+    protected void onSimulationStep(float stepSeconds) {
+        mPreviousAngle = mCurrentAngle;
+        mCurrentAngle += SWEEP_SPEED * stepSeconds;
+        if (mPreviousAngle >= 360) {
+            mPreviousAngle -= 360;
+            mCurrentAngle -= 360;
+        }
+    }
+
+    @Override
+    protected void onDrawOnCanvas(Canvas canvas, long frameTimeNanos) {
+        drainContactUpdates();
+        if (mPersistenceEnabled) {
+            drawPersistent(canvas, getSweepAngle(), frameTimeNanos);
+        } else {
+            releaseAccumulation();
+            onDrawOnCanvas(canvas);
+        }
+    }
+
+    @Override
+    protected void onDrawOnCanvas(Canvas canvas) {
+        final float angle = getSweepAngle();
 
         canvas.save();
-        canvas.rotate(mCurrentAngle, halfWidth, halfHeight);
-        drawRadar(canvas, halfWidth, halfHeight, halfRadius);
+        canvas.rotate(angle, mHalfWidth, mHalfHeight);
+        canvas.drawArc(mRadarRect, 0, 360, true, mRadarPaint);
         canvas.restore();
 
-        drawRadarBorder(canvas, halfWidth, halfHeight, halfRadius);
-        drawRadarLines(canvas, halfWidth, halfHeight, halfRadius);
+        drawStaticLayer(canvas, mOverlayLayer);
+        drawContacts(canvas, angle - TOP_ANGLE);
     }
 
     /**
-     * Draw the radar border.
+     * Get the angle of the sweep in the frame being drawn, interpolated between the last two
+     * simulation steps.
      *
-     * @param canvas     canvas to be drawn
-     * @param halfWidth  half width of the canvas
-     * @param halfHeight half height of the canvas
-     * @param halfRadius half radius of the radar
+     * @return canvas rotation of the sweep, in degrees
      */
-    private void drawRadarBorder(Canvas canvas, int halfWidth, int halfHeight, int halfRadius) {
-        mBorderRect.set(
-                halfWidth - halfRadius - (radarBorderWidth / 2),
-                halfHeight - halfRadius - (radarBorderWidth / 2),
-                halfWidth + halfRadius + (radarBorderWidth / 2),
-                halfHeight + halfRadius + (radarBorderWidth / 2));
-        canvas.drawArc(mBorderRect, 0, 360, true, mBorderPaint);
+    private float getSweepAngle() {
+        return mPreviousAngle + (mCurrentAngle - mPreviousAngle) * getInterpolation();
+    }
+
+    /**
+     * Draw the radar in the persistence mode. The accumulation bitmap is faded, stamped with the
+     * wedge and the contacts swept since the last frame, and then blitted.
+     *
+     * @param canvas         canvas to be drawn
+     * @param angle          canvas rotation of the sweep, in degrees
+     * @param frameTimeNanos frame time in nanoseconds
+     */
+    private void drawPersistent(Canvas canvas, float angle, long frameTimeNanos) {
+        final float beamBearing = angle - TOP_ANGLE;
+        if (mAccumulation == null) {
+            mAccumulation = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+            mAccumulationCanvas.setBitmap(mAccumulation);
+            mLastStampBearing = beamBearing;
+            mLastFadeTime = frameTimeNanos;
+        }
+
+        if (frameTimeNanos - mLastFadeTime >= FADE_STEP_INTERVAL * MAX_FADE_STEPS) {
+            mAccumulation.eraseColor(Color.TRANSPARENT);
+            mLastFadeTime = frameTimeNanos;
+        }
+        while (frameTimeNanos - mLastFadeTime >= FADE_STEP_INTERVAL) {
+            mAccumulationCanvas.drawRect(mRadarRect, mFadePaint);
+            mLastFadeTime += FADE_STEP_INTERVAL;
+        }
+
+        final float sweptAngle = ((beamBearing - mLastStampBearing) % 360 + 360) % 360;
+        if (sweptAngle > 0) {
+            mAccumulationCanvas.drawArc(mRadarRect, mLastStampBearing + TOP_ANGLE, sweptAngle,
+                    true, mWedgePaint);
+            stampContacts(mLastStampBearing, beamBearing);
+            mLastStampBearing = beamBearing;
+        }
+
+        drawStaticLayer(canvas, mBackgroundLayer);
+        canvas.drawBitmap(mAccumulation, 0, 0, null);
+        drawStaticLayer(canvas, mOverlayLayer);
     }
 
     /**
-     * Draw the radar.
+     * Stamp in the accumulation bitmap the contacts in the buckets the sweep entered between two
+     * bearings, at the full brightness of their intensity class.
      *
-     * @param canvas     canvas to be drawn
-     * @param halfWidth  half width of the canvas
-     * @param halfHeight half height of the canvas
-     * @param halfRadius half radius of the radar
+     * @param fromBearing beam bearing of the previous frame, in degrees
+     * @param toBearing   beam bearing of the current frame, in degrees
      */
-    private void drawRadar(Canvas canvas, int halfWidth, int halfHeight, int halfRadius) {
-        mRadarPaint.setShader(new SweepGradient(halfWidth, halfHeight, mRadarColors, null));
+    private void stampContacts(float fromBearing, float toBearing) {
+        if (!mContactsPacked || mContacts.hasChanged()) {
+            mContactsPacked = true;
+            mContacts.pack(mHalfWidth, mHalfHeight, mHalfRadius);
+        }
+
+        final int bucketCount = RadarContacts.BUCKET_COUNT;
+        final int fromBucket = (int) Math.floor(fromBearing);
+        final int toBucket = (int) Math.floor(toBearing);
+        final int crossed = ((toBucket - fromBucket) % bucketCount + bucketCount) % bucketCount;
+        if (crossed == 0) {
+            return;
+        }
+        final int firstBucket = ((fromBucket + 1) % bucketCount + bucketCount) % bucketCount;
+        for (int intensityClass = 0; intensityClass < RadarContacts.INTENSITY_CLASSES;
+             intensityClass++) {
+            mContactPaint.setAlpha(255 * (intensityClass + 1) / RadarContacts.INTENSITY_CLASSES);
+            drawBuckets(mAccumulationCanvas, intensityClass, firstBucket, crossed);
+        }
+    }
 
-        mRadarRect.set(
-                halfWidth - halfRadius,
-                halfHeight - halfRadius,
-                halfWidth + halfRadius,
-                halfHeight + halfRadius);
-        canvas.drawArc(mRadarRect, 0, 360, true, mRadarPaint);
+    /**
+     * Release the accumulation bitmap of the persistence mode, if it exists. Always called by the
+     * render thread.
+     */
+    private void releaseAccumulation() {
+        if (mAccumulation != null) {
+            mAccumulationCanvas.setBitmap(null);
+            mAccumulation.recycle();
+            mAccumulation = null;
+        }
     }
 
     /**
-     * Draw the radar lines.
+     * Draw the contacts, faded by the angle the sweep moved since it passed them.
      *
-     * @param canvas     canvas to be drawn
-     * @param halfWidth  half width of the canvas
-     * @param halfHeight half height of the canvas
-     * @param halfRadius half radius of the radar
+     * @param canvas      canvas to be drawn
+     * @param beamBearing bearing of the sweep in degrees, clockwise from the top
      */
-    private void drawRadarLines(Canvas canvas, int halfWidth, int halfHeight, int halfRadius) {
-        canvas.drawCircle(halfWidth, halfHeight, halfRadius / 3, mLinesPaint);
-        canvas.drawCircle(halfWidth, halfHeight, halfRadius / 1.5F, mLinesPaint);
-        canvas.drawCircle(halfWidth, halfHeight, halfRadius, mLinesPaint);
+    private void drawContacts(Canvas canvas, float beamBearing) {
+        if (!mContactsPacked || mContacts.hasChanged()) {
+            mContactsPacked = true;
+            mContacts.pack(mHalfWidth, mHalfHeight, mHalfRadius);
+        }
+
+        final int bucketCount = RadarContacts.BUCKET_COUNT;
+        final int beamBucket = ((int) Math.floor(beamBearing) % bucketCount + bucketCount)
+                % bucketCount;
+        for (int intensityClass = 0; intensityClass < RadarContacts.INTENSITY_CLASSES;
+             intensityClass++) {
+            for (int level = 0; level < FADE_LEVELS; level++) {
+                final int alpha = mContactAlphas[intensityClass * FADE_LEVELS + level];
+                if (alpha == 0) {
+                    continue;
+                }
+                // Buckets the sweep passed between (level) and (level + 1) fade levels ago.
+                final int newestBucket = beamBucket - level * BUCKETS_PER_FADE_LEVEL;
+                final int firstBucket = (newestBucket - BUCKETS_PER_FADE_LEVEL + 1
+                        + 2 * bucketCount) % bucketCount;
+                mContactPaint.setAlpha(alpha);
+                drawBuckets(canvas, intensityClass, firstBucket, BUCKETS_PER_FADE_LEVEL);
+            }
+        }
+    }
+
+    /**
+     * Draw the contacts of an intensity class in a range of buckets, which may wrap around zero.
+     *
+     * @param canvas         canvas to be drawn
+     * @param intensityClass intensity class of the contacts
+     * @param firstBucket    first bucket of the range
+     * @param bucketCount    quantity of buckets in the range
+     */
+    private void drawBuckets(Canvas canvas, int intensityClass, int firstBucket, int bucketCount) {
+        final int endBucket = firstBucket + bucketCount;
+        if (endBucket <= RadarContacts.BUCKET_COUNT) {
+            drawRun(canvas, intensityClass, firstBucket, endBucket);
+        } else {
+            drawRun(canvas, intensityClass, firstBucket, RadarContacts.BUCKET_COUNT);
+            drawRun(canvas, intensityClass, 0, endBucket - RadarContacts.BUCKET_COUNT);
+        }
+    }
+
+    /**
+     * Draw the packed contacts of an intensity class between two buckets in a single call.
+     *
+     * @param canvas         canvas to be drawn
+     * @param intensityClass intensity class of the contacts
+     * @param startBucket    first bucket
+     * @param endBucket      bucket after the last one
+     */
+    private void drawRun(Canvas canvas, int intensityClass, int startBucket, int endBucket) {
+        final int start = mContacts.getRunStart(intensityClass, startBucket);
+        final int end = mContacts.getRunStart(intensityClass, endBucket);
+        if (end > start) {
+            canvas.drawPoints(mContacts.getPoints(), start * 2, (end - start) * 2, mContactPaint);
+        }
+    }
+
+    /**
+     * Create the table with the alpha of the contacts for each intensity class and fade level. The
+     * alpha decays exponentially with the time the sweep takes to move from the contacts to the
+     * middle of the fade level.
+     *
+     * @return alpha table
+     */
+    private int[] createContactAlphas() {
+        final int[] alphas = new int[RadarContacts.INTENSITY_CLASSES * FADE_LEVELS];
+        for (int intensityClass = 0; intensityClass < RadarContacts.INTENSITY_CLASSES;
+             intensityClass++) {
+            final float intensity = (intensityClass + 1F) / RadarContacts.INTENSITY_CLASSES;
+            for (int level = 0; level < FADE_LEVELS; level++) {
+                final float age = (level + 0.5F) * BUCKETS_PER_FADE_LEVEL / SWEEP_SPEED;
+                final double brightness = intensity * Math.exp(-age / CONTACT_FADE_TIME);
+                alphas[intensityClass * FADE_LEVELS + level] = (int) Math.round(255 * brightness);
+            }
+        }
+        return alphas;
+    }
+
+    /**
+     * Draw the parts of the radar that do not move, the border and the lines. It is only called
+     * when the static layer is rendered.
+     *
+     * @param canvas canvas of the static layer
+     */
+    private void drawOverlay(Canvas canvas) {
+        canvas.drawArc(mBorderRect, 0, 360, true, mBorderPaint);
+        canvas.drawPath(mLinesPath, mLinesPaint);
+    }
+
+    /**
+     * Build the {@link Path} with all the radar lines for the current dimensions.
+     */
+    private void updateLinesPath() {
+        final float diagonal = mHalfRadius * 0.7F;
+
+        mLinesPath.rewind();
+        mLinesPath.addCircle(mHalfWidth, mHalfHeight, mHalfRadius / 3, Path.Direction.CW);
+        mLinesPath.addCircle(mHalfWidth, mHalfHeight, mHalfRadius / 1.5F, Path.Direction.CW);
+        mLinesPath.addCircle(mHalfWidth, mHalfHeight, mHalfRadius, Path.Direction.CW);
 
-        canvas.drawLine(
-                halfWidth,
-                halfHeight - halfRadius,
-                halfWidth,
-                halfHeight + halfRadius,
-                mLinesPaint);
+        mLinesPath.moveTo(mHalfWidth, mHalfHeight - mHalfRadius);
+        mLinesPath.lineTo(mHalfWidth, mHalfHeight + mHalfRadius);
 
-        canvas.drawLine(
-                halfWidth - halfRadius,
-                halfHeight,
-                halfWidth + halfRadius,
-                halfHeight,
-                mLinesPaint);
+        mLinesPath.moveTo(mHalfWidth - mHalfRadius, mHalfHeight);
+        mLinesPath.lineTo(mHalfWidth + mHalfRadius, mHalfHeight);
 
-        canvas.drawLine(
-                halfWidth - halfRadius * 0.7F,
-                halfHeight - halfRadius * 0.7F,
-                halfWidth + halfRadius * 0.7F,
-                halfHeight + halfRadius * 0.7F,
-                mLinesPaint);
+        mLinesPath.moveTo(mHalfWidth - diagonal, mHalfHeight - diagonal);
+        mLinesPath.lineTo(mHalfWidth + diagonal, mHalfHeight + diagonal);
 
-        canvas.drawLine(
-                halfWidth + halfRadius * 0.7F,
-                halfHeight - halfRadius * 0.7F,
-                halfWidth - halfRadius * 0.7F,
-                halfHeight + halfRadius * 0.7F,
-                mLinesPaint
-        );
+        mLinesPath.moveTo(mHalfWidth + diagonal, mHalfHeight - diagonal);
+        mLinesPath.lineTo(mHalfWidth - diagonal, mHalfHeight + diagonal);
     }
 
     /**
      * Get the smallest dimension (width or height) of the canvas. This method is needed to
      * guarantee that the view will always be fully shown, even if the dimensions are not square.
      *
-     * @param canvas radar canvas
+     * @param width  canvas width
+     * @param height canvas height
      *
      * @return the smallest view
      */
-    private int getSmallestDimension(Canvas canvas) {
-        final int canvasHeight = canvas.getHeight();
-        final int canvasWidth = canvas.getWidth();
-        return canvasHeight < canvasWidth ? canvasHeight : canvasWidth;
+    private int getSmallestDimension(int width, int height) {
+        return height < width ? height : width;
     }
 }
@@ -0,0 +1,234 @@
+package com.escodro.viittaus.view;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process-wide scheduler that renders every resumed {@link AnimatedSurfaceView} in a single
+ * display-priority thread.
+ * <p/>
+ * The scheduler thread receives the vsync through {@link Choreographer} frame callbacks and offers
+ * each frame to all the registered views, which decide by themselves if their own frame deadline
+ * was reached. When no view needs a new frame the thread parks until it is woken up again, or until
+ * the earliest frame scheduled by a view with {@link AnimatedSurfaceView#requestRenderAt(long)}.
+ * When no view is registered at all the thread is stopped until a view is registered again.
+ * <p/>
+ * Registering and unregistering a view only enqueues it in a lock-free queue, the view list itself
+ * is only touched by the scheduler thread.
+ */
+final class RenderScheduler implements Choreographer.FrameCallback, Handler.Callback {
+
+    /**
+     * Message to wake the scheduler thread up.
+     */
+    private static final int MSG_WAKE_UP = 1;
+
+    /**
+     * Message to wake the scheduler thread up for a frame scheduled by a view.
+     */
+    private static final int MSG_SCHEDULED_FRAME = 2;
+
+    /**
+     * Nanoseconds in one millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Name of the scheduler thread.
+     */
+    private static final String THREAD_NAME = "RenderScheduler";
+
+    /**
+     * Single instance of {@link RenderScheduler}.
+     */
+    private static RenderScheduler sInstance;
+
+    /**
+     * Views whose registration changed and were not yet handled by the scheduler thread.
+     */
+    private final ConcurrentLinkedQueue<AnimatedSurfaceView> mPendingViews;
+
+    /**
+     * Boolean to avoid sending more than one wake up message at a time.
+     */
+    private final AtomicBoolean mWakeUpPending;
+
+    /**
+     * Views being rendered. Only accessed by the scheduler thread.
+     */
+    private final ArrayList<AnimatedSurfaceView> mViews;
+
+    /**
+     * Scheduler thread, or null when no view is registered.
+     */
+    private HandlerThread mThread;
+
+    /**
+     * {@link Handler} bound to the scheduler thread, or null when no view is registered.
+     */
+    private Handler mHandler;
+
+    /**
+     * {@link Choreographer} of the scheduler thread.
+     */
+    private Choreographer mChoreographer;
+
+    /**
+     * Boolean to control if a frame callback is already posted in the {@link Choreographer}.
+     */
+    private boolean mFrameCallbackPosted;
+
+    /**
+     * Create a new instance of {@link RenderScheduler}.
+     */
+    private RenderScheduler() {
+        mPendingViews = new ConcurrentLinkedQueue<>();
+        mWakeUpPending = new AtomicBoolean();
+        mViews = new ArrayList<>();
+    }
+
+    /**
+     * Get the single instance of {@link RenderScheduler}.
+     *
+     * @return the render scheduler
+     */
+    static synchronized RenderScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new RenderScheduler();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Register or unregister the view, according to {@link AnimatedSurfaceView#isRendering()}.
+     *
+     * @param view view whose registration changed
+     */
+    void update(AnimatedSurfaceView view) {
+        mPendingViews.offer(view);
+        wakeUp();
+    }
+
+    /**
+     * Wake the scheduler thread up, so the next vsync is offered to the views again.
+     */
+    void wakeUp() {
+        if (mWakeUpPending.compareAndSet(false, true)) {
+            synchronized (this) {
+                if (mHandler == null) {
+                    mThread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_DISPLAY);
+                    mThread.start();
+                    mHandler = new Handler(mThread.getLooper(), this);
+                }
+                mHandler.sendEmptyMessage(MSG_WAKE_UP);
+            }
+        }
+    }
+
+    /**
+     * Stop the scheduler thread if no view is registered and no registration is pending. Always
+     * called by the scheduler thread.
+     */
+    private void stopIfIdle() {
+        synchronized (this) {
+            if (!mViews.isEmpty() || !mPendingViews.isEmpty() || mWakeUpPending.get()) {
+                return;
+            }
+            mThread.quit();
+            mThread = null;
+            mHandler = null;
+            mChoreographer = null;
+            mFrameCallbackPosted = false;
+        }
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        if (msg.what == MSG_SCHEDULED_FRAME) {
+            postFrameCallback();
+            return true;
+        }
+        if (msg.what != MSG_WAKE_UP) {
+            return false;
+        }
+        mWakeUpPending.set(false);
+        if (mChoreographer == null) {
+            mChoreographer = Choreographer.getInstance();
+        }
+        updateViews();
+        if (mViews.isEmpty()) {
+            stopIfIdle();
+        } else {
+            postFrameCallback();
+        }
+        return true;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameCallbackPosted = false;
+        updateViews();
+
+        boolean needsFrame = false;
+        for (int i = 0; i < mViews.size(); i++) {
+            needsFrame |= mViews.get(i).renderFrame(frameTimeNanos);
+        }
+
+        mHandler.removeMessages(MSG_SCHEDULED_FRAME);
+        if (needsFrame) {
+            postFrameCallback();
+        } else if (mViews.isEmpty()) {
+            stopIfIdle();
+        } else {
+            postScheduledFrame();
+        }
+    }
+
+    /**
+     * Wake the scheduler thread up at the earliest frame scheduled by the views, if any.
+     */
+    private void postScheduledFrame() {
+        long scheduledTime = Long.MAX_VALUE;
+        for (int i = 0; i < mViews.size(); i++) {
+            scheduledTime = Math.min(scheduledTime, mViews.get(i).getScheduledRenderTime());
+        }
+        if (scheduledTime != Long.MAX_VALUE) {
+            final long delay = Math.max(0, scheduledTime - System.nanoTime());
+            // Rounded up, so the thread is not woken up before the scheduled time.
+            final long delayMillis = (delay + NANOS_PER_MILLI - 1) / NANOS_PER_MILLI;
+            mHandler.sendEmptyMessageDelayed(MSG_SCHEDULED_FRAME, delayMillis);
+        }
+    }
+
+    /**
+     * Apply the pending registration changes to the view list.
+     */
+    private void updateViews() {
+        AnimatedSurfaceView view;
+        while ((view = mPendingViews.poll()) != null) {
+            final boolean registered = mViews.contains(view);
+            if (view.isRendering() && !registered) {
+                mViews.add(view);
+            } else if (!view.isRendering() && registered) {
+                mViews.remove(view);
+            }
+        }
+    }
+
+    /**
+     * Post the next frame callback, if there is no callback already waiting for the vsync.
+     */
+    private void postFrameCallback() {
+        if (!mFrameCallbackPosted) {
+            mFrameCallbackPosted = true;
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+}
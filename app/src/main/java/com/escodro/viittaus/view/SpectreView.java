@@ -2,29 +2,209 @@ package com.escodro.viittaus.view;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.util.AttributeSet;
 
 import com.escodro.viittaus.R;
-
-import java.util.LinkedList;
+import com.escodro.viittaus.audio.SpectrumBus;
+import com.escodro.viittaus.audio.SpectrumTrack;
+import com.escodro.viittaus.time.PlaybackClock;
+import com.escodro.viittaus.util.IntRingBuffer;
+import com.escodro.viittaus.util.IntSpscQueue;
+import com.escodro.viittaus.util.SlidingWindowStats;
 
 /**
  * Custom view to simulate an audio spectrum.
+ * <p/>
+ * In {@link #DISPLAY_MODE_WATERFALL} the view shows the history of the spectrum instead of its
+ * bars: each complete spectrum (one volume for each bar) is written as a row of palette colors in a
+ * circular offscreen bitmap, which is drawn with two blits split at the newest row. The history is
+ * never redrawn, so a frame costs the same whatever the quantity of rows shown.
+ * <p/>
+ * When there are more bars than the view can show with {@link #MIN_COLUMN_WIDTH} pixels each, the
+ * bars are decimated: each drawn column shows the peak of the bars it covers. The volumes of all
+ * the bars are still kept, so the full resolution comes back when the view grows.
+ * <p/>
+ * The volumes are expected in the decibel scale of a
+ * {@link com.escodro.viittaus.audio.SpectrumAnalyzer}, so they are drawn linearly. With auto-gain
+ * enabled, they are scaled to the recent level of the source instead: the reference level is the
+ * highest of the held peak, a multiple of the mean of the window and a floor that keeps silence
+ * from being amplified. The maximum and the mean of the window are updated in O(1) for each volume
+ * by a {@link SlidingWindowStats}, and the held peak decays by a configurable factor for each
+ * spectrum, so the gain recovers smoothly after a loud passage leaves the window.
+ * <p/>
+ * The volumes can also come from a precomputed {@link SpectrumTrack}: the render thread reads the
+ * frame of the current track position from the mapped file, so a track played again is shown
+ * without decoding or analyzing its audio. Or they can come from a {@link SpectrumBus}, where the
+ * render thread takes the newest frame not ahead of the track position, skipping the ones it had
+ * no time to show, and clears the spectrum when the bus is reset by a seek. The track position is
+ * set, or read from a {@link PlaybackClock} at the time of each frame, in which case the view keeps
+ * rendering while the clock is playing.
  */
 public class SpectreView extends AnimatedSurfaceView {
 
+    /**
+     * Display mode where the last spectrum is drawn as bars.
+     */
+    public static final int DISPLAY_MODE_BARS = 0;
+
+    /**
+     * Display mode where the spectrum history is drawn as a waterfall, newest at the top.
+     */
+    public static final int DISPLAY_MODE_WATERFALL = 1;
+
+    /**
+     * Height in pixels of each spectrum in the waterfall.
+     */
+    private static final int WATERFALL_ROW_HEIGHT = 2;
+
+    /**
+     * Narrowest column in pixels, one for the bar and one for the gap between bars.
+     */
+    private static final int MIN_COLUMN_WIDTH = 2;
+
     /**
      * Half height of center separator.
      */
     private static final int SEPARATOR_HALF_HEIGHT = 2;
 
     /**
-     * List with all the volume values.
+     * Default quantity of bars in the spectrum.
+     */
+    private static final int DEFAULT_BAR_COUNT = 64;
+
+    /**
+     * Quantity of bar counts the sample channel can hold before rejecting new samples.
+     */
+    private static final int CHANNEL_BAR_COUNTS = 4;
+
+    /**
+     * Highest volume drawn, which fills the view height.
+     */
+    private static final int MAX_VOLUME = 100;
+
+    /**
+     * Divisor that converts the volume times the view height in half of the bar height.
+     */
+    private static final int VOLUME_HEIGHT_DIVISOR = 210;
+
+    /**
+     * Default quantity of spectra in the auto-gain window.
+     */
+    private static final int DEFAULT_AUTO_GAIN_SPECTRA = 32;
+
+    /**
+     * Default factor applied to the held peak after each spectrum.
+     */
+    private static final float DEFAULT_PEAK_HOLD_DECAY = 0.95F;
+
+    /**
+     * Multiple of the window mean the reference level never goes below, so a steady source does
+     * not fill the view.
+     */
+    private static final float MEAN_HEADROOM = 1.5F;
+
+    /**
+     * Lowest reference level, so silence and noise are not amplified to the full height.
+     */
+    private static final float MIN_REFERENCE_VOLUME = 10;
+
+    /**
+     * Ring buffer with the last volume values, one for each bar. Only accessed by the render
+     * thread.
+     */
+    private IntRingBuffer mVolumes;
+
+    /**
+     * Lock-free channel with the samples added and not yet drained by the render thread.
+     */
+    private IntSpscQueue mSampleChannel;
+
+    /**
+     * Array reused by the render thread to drain the sample channel.
+     */
+    private int[] mDrainBuffer;
+
+    /**
+     * Boolean to represent if the volumes must be cleared in the next frame.
+     */
+    private volatile boolean mClearRequested;
+
+    /**
+     * Boolean to represent if the volumes are scaled by the auto-gain.
+     */
+    private volatile boolean mAutoGain;
+
+    /**
+     * Quantity of volumes in the auto-gain window.
+     */
+    private volatile int mAutoGainWindow;
+
+    /**
+     * Factor applied to the held peak after each spectrum, between 0 and 1.
+     */
+    private volatile float mPeakHoldDecay = DEFAULT_PEAK_HOLD_DECAY;
+
+    /**
+     * Maximum and mean of the auto-gain window, or null while the auto-gain is not used. Only
+     * accessed by the render thread.
+     */
+    private SlidingWindowStats mGainStats;
+
+    /**
+     * Held peak of the auto-gain, decayed after each spectrum.
+     */
+    private float mPeakHold;
+
+    /**
+     * Precomputed spectrum shown at the track position, or null.
+     */
+    private volatile SpectrumTrack mTrack;
+
+    /**
+     * Position of the track, in milliseconds, or -1 if unknown.
+     */
+    private volatile long mTrackPosition = -1;
+
+    /**
+     * Clock the track position is read from, or null to use the position set.
+     */
+    private volatile PlaybackClock mPlaybackClock;
+
+    /**
+     * Track position of the frame being drawn, in milliseconds, or -1 if unknown. Only accessed by
+     * the render thread.
+     */
+    private long mFramePosition = -1;
+
+    /**
+     * Bus whose frames are shown, or null.
      */
-    private LinkedList<Integer> mVolumeList;
+    private volatile SpectrumBus mBus;
+
+    /**
+     * Reader of the bus, or null. Only accessed by the render thread.
+     */
+    private SpectrumBus.Reader mBusReader;
+
+    /**
+     * Track whose frame was last shown. Only accessed by the render thread.
+     */
+    private SpectrumTrack mShownTrack;
+
+    /**
+     * Index of the track frame last shown.
+     */
+    private int mShownFrame;
+
+    /**
+     * Array reused by the render thread to read the track frames.
+     */
+    private int[] mTrackVolumes;
 
     /**
      * Boolean to represent if the center separator should be shown.
@@ -44,18 +224,119 @@ public class SpectreView extends AnimatedSurfaceView {
     /**
      * Integer to represent the custom quantity of bars in the spectrum.
      */
-    private int mAttrBarCount;
+    private int mAttrBarCount = DEFAULT_BAR_COUNT;
 
     /**
      * Integer to represent the bar width.
      */
     private int mBarWidth;
 
+    /**
+     * Quantity of columns drawn, which is the bar count unless the bars are decimated.
+     */
+    private int mColumnCount;
+
+    /**
+     * Index of the first bar of each column, plus the bar count.
+     */
+    private int[] mColumnStart;
+
     /**
      * Integer to represent the margin of each bar in the spectrum.
      */
     private int mMargin;
 
+    /**
+     * Paint of the separator.
+     */
+    private Paint mSeparatorPaint;
+
+    /**
+     * Paint of the bars, drawn as lines with the bar width as stroke width.
+     */
+    private Paint mBarLinePaint;
+
+    /**
+     * Line coordinates (x0, y0, x1, y1) of each column, submitted in a single draw call.
+     */
+    private float[] mBarLines;
+
+    /**
+     * Volume each column had when its line coordinates were last updated.
+     */
+    private int[] mBarVolumes;
+
+    /**
+     * Half of the bar height in pixels for each volume, calculated for the view height.
+     */
+    private int[] mVolumeToPixel;
+
+    /**
+     * Vertical center of the bars.
+     */
+    private int mCenterHeight;
+
+    /**
+     * Paint of the background.
+     */
+    private Paint mBackgroundPaint;
+
+    /**
+     * {@link Rect} with the background dimensions.
+     */
+    private Rect mBackgroundRect;
+
+    /**
+     * {@link Rect} with the separator dimensions.
+     */
+    private Rect mSeparatorRect;
+
+    /**
+     * Current display mode, {@link #DISPLAY_MODE_BARS} or {@link #DISPLAY_MODE_WATERFALL}.
+     */
+    private volatile int mDisplayMode = DISPLAY_MODE_BARS;
+
+    /**
+     * Circular bitmap with one row of pixels for each spectrum in the waterfall, or null. Only
+     * accessed by the render thread.
+     */
+    private Bitmap mWaterfall;
+
+    /**
+     * Quantity of rows in the waterfall bitmap.
+     */
+    private int mWaterfallRows;
+
+    /**
+     * Row of the waterfall bitmap with the newest spectrum.
+     */
+    private int mWaterfallRow;
+
+    /**
+     * Quantity of volumes drained since the last waterfall row was written.
+     */
+    private int mSamplesSinceRow;
+
+    /**
+     * Color of each volume in the waterfall, from the background color to the bar color.
+     */
+    private int[] mPalette;
+
+    /**
+     * Pixels of the waterfall row being written.
+     */
+    private int[] mRowPixels;
+
+    /**
+     * Source {@link Rect} of the waterfall blits.
+     */
+    private Rect mWaterfallSrc;
+
+    /**
+     * Destination {@link Rect} of the waterfall blits.
+     */
+    private Rect mWaterfallDst;
+
     /**
      * Create a new instance of {@link SpectreView}.
      *
@@ -79,21 +360,121 @@ public class SpectreView extends AnimatedSurfaceView {
     }
 
     /**
-     * Initialize the list of spectrum.
+     * Initialize the volume buffer and the drawing components.
      */
     private void init() {
-        mVolumeList = new LinkedList<>();
+        mVolumes = new IntRingBuffer(mAttrBarCount);
+        mSampleChannel = new IntSpscQueue(mAttrBarCount * CHANNEL_BAR_COUNTS);
+        mDrainBuffer = new int[mSampleChannel.capacity()];
+        if (mAutoGainWindow <= 0) {
+            mAutoGainWindow = mAttrBarCount * DEFAULT_AUTO_GAIN_SPECTRA;
+        }
+
+        mSeparatorPaint = new Paint();
+        mSeparatorPaint.setColor(mAttrBarColor);
+        mSeparatorPaint.setStyle(Paint.Style.FILL);
+
+        mBarLinePaint = new Paint();
+        mBarLinePaint.setColor(mAttrBarColor);
+        mBarLinePaint.setStyle(Paint.Style.STROKE);
+        mBarLinePaint.setStrokeCap(Paint.Cap.BUTT);
+
+        mBarLines = new float[mAttrBarCount * 4];
+        mBarVolumes = new int[mAttrBarCount];
+        mColumnStart = new int[mAttrBarCount + 1];
+        mVolumeToPixel = new int[MAX_VOLUME + 1];
+
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(mAttrBackgroundColor);
+        mBackgroundPaint.setStyle(Paint.Style.FILL);
+
+        mBackgroundRect = new Rect();
+        mSeparatorRect = new Rect();
+
+        mPalette = createPalette(mAttrBackgroundColor, mAttrBarColor);
+        mRowPixels = new int[mAttrBarCount];
+        mWaterfallSrc = new Rect();
+        mWaterfallDst = new Rect();
+
+        setRenderMode(RENDER_MODE_WHEN_DIRTY);
+    }
+
+    @Override
+    protected void onSurfaceSizeChanged(int width, int height) {
+        mColumnCount = Math.max(1, Math.min(mAttrBarCount, width / MIN_COLUMN_WIDTH));
+        for (int column = 0; column <= mColumnCount; column++) {
+            mColumnStart[column] = column * mAttrBarCount / mColumnCount;
+        }
+        mBarWidth = width / mColumnCount;
+        mMargin = (width - mColumnCount * mBarWidth) / 2;
+        mCenterHeight = height / 2;
+
+        final int right = mColumnCount * mBarWidth + mMargin;
+        mBackgroundRect.set(mMargin, 0, right, height);
+        mSeparatorRect.set(
+                mMargin,
+                mCenterHeight - SEPARATOR_HALF_HEIGHT,
+                right,
+                mCenterHeight + SEPARATOR_HALF_HEIGHT);
+
+        for (int volume = 0; volume <= MAX_VOLUME; volume++) {
+            mVolumeToPixel[volume] = volume * height / VOLUME_HEIGHT_DIVISOR;
+        }
+
+        // A one pixel gap is left between the bars, but a zero stroke would be a hairline.
+        final int strokeWidth = Math.max(1, mBarWidth - 1);
+        mBarLinePaint.setStrokeWidth(strokeWidth);
+        for (int i = 0; i < mColumnCount; i++) {
+            final float center = mMargin + i * mBarWidth + strokeWidth / 2F;
+            mBarLines[i * 4] = center;
+            mBarLines[i * 4 + 2] = center;
+            mBarVolumes[i] = -1;
+        }
+
+        releaseWaterfall();
+        mWaterfallRows = height / WATERFALL_ROW_HEIGHT;
+    }
+
+    @Override
+    protected void onDrawOnCanvas(Canvas canvas, long frameTimeNanos) {
+        final PlaybackClock clock = mPlaybackClock;
+        if (clock == null) {
+            mFramePosition = mTrackPosition;
+        } else {
+            mFramePosition = clock.getPositionMillis(frameTimeNanos);
+            if (clock.isPlaying()) {
+                requestRender();
+            }
+        }
+        onDrawOnCanvas(canvas);
     }
 
     @Override
     protected void onDrawOnCanvas(Canvas canvas) {
-        mBarWidth = getWidth() / mAttrBarCount;
-        mMargin = (getWidth() - mAttrBarCount * mBarWidth) / 2;
-        final int centerHeight = getHeight() / 2;
+        if (mDisplayMode == DISPLAY_MODE_WATERFALL) {
+            if (mWaterfall == null && mWaterfallRows > 0 && mColumnCount > 0) {
+                mWaterfall = Bitmap.createBitmap(mColumnCount, mWaterfallRows,
+                        Bitmap.Config.ARGB_8888);
+                mWaterfall.eraseColor(mPalette[0]);
+                mWaterfallRow = 0;
+            }
+        } else {
+            releaseWaterfall();
+        }
+        drainSamples();
+        readTrackFrame();
+        readBusFrame();
 
-        drawBackground(canvas);
-        drawSeparator(canvas, centerHeight);
-        drawBars(canvas, centerHeight);
+        if (mWaterfall != null) {
+            drawWaterfall(canvas);
+            return;
+        }
+
+        canvas.drawRect(mBackgroundRect, mBackgroundPaint);
+        if (mAttrShowSeparator) {
+            canvas.drawRect(mSeparatorRect, mSeparatorPaint);
+        }
+        drawBars(canvas);
     }
 
     /**
@@ -110,92 +491,403 @@ public class SpectreView extends AnimatedSurfaceView {
             mAttrBarColor = typedArray.getColor(R.styleable.SpectreView_lineColor, 0xff00000);
             mAttrBackgroundColor = typedArray.getColor(R.styleable.SpectreView_backgroundColor,
                     0xff00000);
-            mAttrBarCount = typedArray.getInt(R.styleable.SpectreView_barCount, 64);
+            mAttrBarCount = typedArray.getInt(R.styleable.SpectreView_barCount, DEFAULT_BAR_COUNT);
             mAttrShowSeparator = typedArray.getBoolean(R.styleable.SpectreView_showSeparator, true);
+            mDisplayMode = typedArray.getInt(R.styleable.SpectreView_displayMode,
+                    DISPLAY_MODE_BARS);
+            mAutoGain = typedArray.getBoolean(R.styleable.SpectreView_autoGain, false);
+            mAutoGainWindow = typedArray.getInt(R.styleable.SpectreView_autoGainWindow, 0);
             typedArray.recycle();
         }
     }
 
     /**
-     * Draw the center separator.
+     * Draw all the columns in a single call, as vertical lines with the bar width as stroke width.
+     * Only the coordinates of the columns whose volume changed are updated.
      *
-     * @param canvas       canvas to be drawn
-     * @param centerHeight half height of the separator
+     * @param canvas canvas to be drawn
      */
-    private void drawSeparator(Canvas canvas, int centerHeight) {
-        if (mAttrShowSeparator) {
-            final Rect separator = new Rect();
-            separator.set(
-                    mMargin,
-                    centerHeight - SEPARATOR_HALF_HEIGHT,
-                    mAttrBarCount *
-                            mBarWidth + mMargin,
-                    centerHeight + SEPARATOR_HALF_HEIGHT);
-            canvas.drawRect(separator, getDefaultPaint());
+    private void drawBars(Canvas canvas) {
+        final int columns = getFilledColumnCount();
+        for (int i = 0; i < columns; i++) {
+            final int volume = getColumnVolume(i);
+            if (volume == mBarVolumes[i]) {
+                continue;
+            }
+            mBarVolumes[i] = volume;
+
+            final int halfVolume = mVolumeToPixel[volume];
+            mBarLines[i * 4 + 1] = mCenterHeight - halfVolume;
+            mBarLines[i * 4 + 3] = mCenterHeight + halfVolume;
+        }
+        canvas.drawLines(mBarLines, 0, columns * 4, mBarLinePaint);
+    }
+
+    /**
+     * Get the quantity of columns with at least one volume in the buffer.
+     *
+     * @return quantity of columns to be drawn
+     */
+    private int getFilledColumnCount() {
+        final int size = mVolumes.size();
+        int columns = 0;
+        while (columns < mColumnCount && mColumnStart[columns] < size) {
+            columns++;
+        }
+        return columns;
+    }
+
+    /**
+     * Get the volume of a column, which is the peak volume of the bars it covers.
+     *
+     * @param column index of the column
+     *
+     * @return volume between 0 and 100
+     */
+    private int getColumnVolume(int column) {
+        final int end = Math.min(mColumnStart[column + 1], mVolumes.size());
+        int peak = 0;
+        for (int bar = mColumnStart[column]; bar < end; bar++) {
+            peak = Math.max(peak, mVolumes.get(bar));
         }
+        return Math.min(MAX_VOLUME, peak);
     }
 
     /**
-     * Draw the background based on the color selected.
+     * Draw the waterfall with two blits: the rows from the newest one to the end of the bitmap at
+     * the top, followed by the rows from the start of the bitmap.
      *
      * @param canvas canvas to be drawn
      */
-    private void drawBackground(Canvas canvas) {
-        final Paint backgroundColor = new Paint();
-        backgroundColor.setColor(mAttrBackgroundColor);
-        backgroundColor.setStyle(Paint.Style.FILL);
+    private void drawWaterfall(Canvas canvas) {
+        final int left = mBackgroundRect.left;
+        final int right = mBackgroundRect.right;
+        final int newerRows = mWaterfallRows - mWaterfallRow;
+        final int split = newerRows * WATERFALL_ROW_HEIGHT;
+
+        mWaterfallSrc.set(0, mWaterfallRow, mColumnCount, mWaterfallRows);
+        mWaterfallDst.set(left, 0, right, split);
+        canvas.drawBitmap(mWaterfall, mWaterfallSrc, mWaterfallDst, null);
+
+        if (mWaterfallRow > 0) {
+            mWaterfallSrc.set(0, 0, mColumnCount, mWaterfallRow);
+            mWaterfallDst.set(left, split, right, mWaterfallRows * WATERFALL_ROW_HEIGHT);
+            canvas.drawBitmap(mWaterfall, mWaterfallSrc, mWaterfallDst, null);
+        }
+    }
 
-        final Rect background = new Rect();
-        background.set(mMargin, 0, mAttrBarCount * mBarWidth + mMargin, getHeight());
-        canvas.drawRect(background, backgroundColor);
+    /**
+     * Write the last spectrum in a new row of the waterfall, above the previous newest row.
+     */
+    private void writeWaterfallRow() {
+        for (int i = 0; i < mColumnCount; i++) {
+            mRowPixels[i] = mPalette[getColumnVolume(i)];
+        }
+        mWaterfallRow = (mWaterfallRow + mWaterfallRows - 1) % mWaterfallRows;
+        mWaterfall.setPixels(mRowPixels, 0, mColumnCount, 0, mWaterfallRow, mColumnCount, 1);
     }
 
     /**
-     * Draw the bar
+     * Release the waterfall bitmap, if it exists. Always called by the render thread.
+     */
+    private void releaseWaterfall() {
+        if (mWaterfall != null) {
+            mWaterfall.recycle();
+            mWaterfall = null;
+        }
+    }
+
+    /**
+     * Create the waterfall palette, interpolating each color channel from the background color
+     * (volume zero) to the bar color (highest volume).
      *
-     * @param canvas       canvas to be drawn
-     * @param centerHeight half height of the bar
+     * @param backgroundColor background color
+     * @param barColor        bar color
+     *
+     * @return color of each volume
      */
-    private void drawBars(Canvas canvas, int centerHeight) {
-        for (int i = 0; i < mVolumeList.size(); i++) {
-            final Rect rect = new Rect();
-            final int halfVolume = mVolumeList.get(i) * getHeight() / 210;
-            final int left = mMargin + i * mBarWidth;
-            final int right = left + mBarWidth - 1;
-            rect.set(left, centerHeight - halfVolume, right, centerHeight + halfVolume);
-            canvas.drawRect(rect, getDefaultPaint());
+    private static int[] createPalette(int backgroundColor, int barColor) {
+        final int[] palette = new int[MAX_VOLUME + 1];
+        for (int volume = 0; volume <= MAX_VOLUME; volume++) {
+            palette[volume] = Color.argb(255,
+                    interpolate(Color.red(backgroundColor), Color.red(barColor), volume),
+                    interpolate(Color.green(backgroundColor), Color.green(barColor), volume),
+                    interpolate(Color.blue(backgroundColor), Color.blue(barColor), volume));
         }
+        return palette;
     }
 
     /**
-     * Get the default paint of the spectrum view.
+     * Interpolate a color channel by the volume.
+     *
+     * @param from   channel value at volume zero
+     * @param to     channel value at the highest volume
+     * @param volume volume between 0 and 100
      *
-     * @return default paint
+     * @return channel value
      */
-    private Paint getDefaultPaint() {
-        final Paint paint = new Paint();
-        paint.setColor(mAttrBarColor);
-        paint.setStyle(Paint.Style.FILL);
-        return paint;
+    private static int interpolate(int from, int to, int volume) {
+        return from + (to - from) * volume / MAX_VOLUME;
     }
 
     /**
-     * Add a volume to be drawn as a bar in the spectrum view.
+     * Set the display mode.
      *
-     * @param volume volume to be drawn
+     * @param displayMode {@link #DISPLAY_MODE_BARS} or {@link #DISPLAY_MODE_WATERFALL}
      */
-    public void add(int volume) {
-        volume = volume * volume / (100) * volume / (100);
-        mVolumeList.add(volume);
-        if (mVolumeList.size() > mAttrBarCount) {
-            mVolumeList.remove();
+    public void setDisplayMode(int displayMode) {
+        mDisplayMode = displayMode;
+        requestRender();
+    }
+
+    /**
+     * Get the current display mode.
+     *
+     * @return {@link #DISPLAY_MODE_BARS} or {@link #DISPLAY_MODE_WATERFALL}
+     */
+    public int getDisplayMode() {
+        return mDisplayMode;
+    }
+
+    /**
+     * Move all the samples waiting in the channel to the volume buffer. Always called by the render
+     * thread at the start of the frame.
+     */
+    private void drainSamples() {
+        final boolean autoGain = mAutoGain;
+        if (!autoGain) {
+            mGainStats = null;
+        } else if (mGainStats == null || mGainStats.getWindowLength() != mAutoGainWindow) {
+            mGainStats = new SlidingWindowStats(mAutoGainWindow);
+            mPeakHold = 0;
+        }
+        if (mClearRequested) {
+            mClearRequested = false;
+            mVolumes.clear();
+            mSamplesSinceRow = 0;
+            if (mGainStats != null) {
+                mGainStats.clear();
+                mPeakHold = 0;
+            }
+        }
+
+        int count;
+        while ((count = mSampleChannel.poll(mDrainBuffer, 0, mDrainBuffer.length)) > 0) {
+            for (int i = 0; i < count; i++) {
+                addVolume(mDrainBuffer[i], autoGain);
+            }
+        }
+    }
+
+    /**
+     * Read the frame of the track position, if it was not shown yet, and add its volumes. Always
+     * called by the render thread after the samples are drained.
+     */
+    private void readTrackFrame() {
+        final SpectrumTrack track = mTrack;
+        if (track == null) {
+            mShownTrack = null;
+            return;
+        }
+        final int frame = track.getFrameIndex(mFramePosition);
+        if (track == mShownTrack && frame == mShownFrame) {
+            return;
+        }
+        mShownTrack = track;
+        mShownFrame = frame;
+
+        final int bandCount = track.getBandCount();
+        if (mTrackVolumes == null || mTrackVolumes.length != bandCount) {
+            mTrackVolumes = new int[bandCount];
+        }
+        track.readFrame(frame, mTrackVolumes);
+        final boolean autoGain = mGainStats != null;
+        for (int i = 0; i < bandCount; i++) {
+            addVolume(mTrackVolumes[i], autoGain);
+        }
+    }
+
+    /**
+     * Read the newest frame of the bus not ahead of the track position, if any, and add its
+     * volumes. Always called by the render thread after the samples are drained.
+     */
+    private void readBusFrame() {
+        final SpectrumBus bus = mBus;
+        if (bus == null) {
+            mBusReader = null;
+            return;
+        }
+        if (mBusReader == null || mBusReader.getBus() != bus) {
+            mBusReader = bus.newReader();
         }
+        if (mBusReader.consumeReset()) {
+            mVolumes.clear();
+            mSamplesSinceRow = 0;
+        }
+
+        final long position = mFramePosition;
+        if (mBusReader.read(position < 0 ? Long.MAX_VALUE : position)) {
+            final int[] frame = mBusReader.getFrame();
+            final boolean autoGain = mGainStats != null;
+            for (int i = 0; i < frame.length; i++) {
+                addVolume(frame[i], autoGain);
+            }
+        }
+    }
+
+    /**
+     * Scale a volume and add it to the volume buffer, writing a waterfall row after each complete
+     * spectrum.
+     *
+     * @param volume   volume between 0 and 100
+     * @param autoGain true to scale the volume by the auto-gain, false to add it as it is
+     */
+    private void addVolume(int volume, boolean autoGain) {
+        mVolumes.add(autoGain ? applyAutoGain(volume) : volume);
+        if (++mSamplesSinceRow == mAttrBarCount) {
+            mSamplesSinceRow = 0;
+            mPeakHold *= mPeakHoldDecay;
+            if (mWaterfall != null) {
+                writeWaterfallRow();
+            }
+        }
+    }
+
+    /**
+     * Add a volume to the auto-gain window and scale it to the reference level.
+     *
+     * @param volume volume added
+     *
+     * @return volume scaled between 0 and 100
+     */
+    private int applyAutoGain(int volume) {
+        mGainStats.add(volume);
+        mPeakHold = Math.max(mPeakHold, mGainStats.getMax());
+        final float reference = Math.max(MIN_REFERENCE_VOLUME,
+                Math.max(mPeakHold, mGainStats.getMean() * MEAN_HEADROOM));
+        return Math.max(0, Math.min(MAX_VOLUME, (int) (volume * MAX_VOLUME / reference)));
+    }
+
+    /**
+     * Enable or disable the auto-gain. While disabled, the volumes are drawn as they are added.
+     *
+     * @param enabled true to scale the volumes to the recent level of the source
+     */
+    public void setAutoGainEnabled(boolean enabled) {
+        mAutoGain = enabled;
+    }
+
+    /**
+     * Get if the auto-gain is enabled.
+     *
+     * @return true if the volumes are scaled to the recent level of the source
+     */
+    public boolean isAutoGainEnabled() {
+        return mAutoGain;
+    }
+
+    /**
+     * Set the length of the auto-gain window. The window is restarted when its length changes.
+     *
+     * @param volumes quantity of volumes in the window, usually a multiple of the bar count
+     */
+    public void setAutoGainWindow(int volumes) {
+        mAutoGainWindow = Math.max(1, volumes);
+    }
+
+    /**
+     * Set how fast the held peak of the auto-gain decays once it leaves the window.
+     *
+     * @param decay factor applied to the held peak after each spectrum, between 0 (no hold) and 1
+     *              (the peak is held until a higher one)
+     */
+    public void setPeakHoldDecay(float decay) {
+        mPeakHoldDecay = Math.max(0, Math.min(1, decay));
+    }
+
+    /**
+     * Add a volume to be drawn as a bar in the spectrum view. It can be called from any thread,
+     * but only one thread may add volumes at a time.
+     *
+     * @param volume volume to be drawn, between 0 and 100 in a decibel scale
+     */
+    public void add(int volume) {
+        mSampleChannel.offer(volume);
+        requestRender();
+    }
+
+    /**
+     * Add a range of volumes to be drawn as bars in the spectrum view, in a single publication. It
+     * can be called from any thread, but only one thread may add volumes at a time. If the render
+     * thread is behind and the volumes do not fit in the channel, the whole range is dropped, so
+     * a spectrum is never drawn in part.
+     *
+     * @param values array with the volumes
+     * @param offset index of the first volume in the array
+     * @param length quantity of volumes
+     */
+    public void add(int[] values, int offset, int length) {
+        mSampleChannel.offer(values, offset, length);
+        requestRender();
+    }
+
+    /**
+     * Get the quantity of bars in the spectrum. Adding this quantity of volumes at once replaces
+     * the whole spectrum, as done with the bands of a
+     * {@link com.escodro.viittaus.audio.SpectrumAnalyzer}.
+     *
+     * @return quantity of bars
+     */
+    public int getBarCount() {
+        return mAttrBarCount;
+    }
+
+    /**
+     * Set the precomputed spectrum shown at the track position, instead of the added volumes.
+     *
+     * @param track spectrum of the track, or null to stop showing it
+     */
+    public void setSpectrumTrack(SpectrumTrack track) {
+        mTrack = track;
+        requestRender();
+    }
+
+    /**
+     * Set the bus whose frames are shown, instead of the added volumes. Any number of views can
+     * show the same bus.
+     *
+     * @param bus spectrum bus, or null to stop showing it
+     */
+    public void setSpectrumBus(SpectrumBus bus) {
+        mBus = bus;
+        requestRender();
+    }
+
+    /**
+     * Set the clock the track position is read from on every frame, instead of the position set.
+     *
+     * @param clock playback clock, or null to use the position set
+     */
+    public void setPlaybackClock(PlaybackClock clock) {
+        mPlaybackClock = clock;
+        requestRender();
+    }
+
+    /**
+     * Set the position of the track whose precomputed spectrum or bus frames are shown.
+     *
+     * @param positionMillis playback position, in milliseconds
+     */
+    public void setTrackPosition(long positionMillis) {
+        mTrackPosition = positionMillis;
+        requestRender();
     }
 
     /**
      * Clear the volume list.
      */
     public void clear() {
-        mVolumeList.clear();
+        mClearRequested = true;
+        requestRender();
     }
 }
@@ -0,0 +1,422 @@
+package com.escodro.viittaus.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+
+import com.escodro.viittaus.R;
+import com.escodro.viittaus.time.ClockHands;
+import com.escodro.viittaus.time.SystemTimeSource;
+import com.escodro.viittaus.time.TimeSource;
+import com.escodro.viittaus.time.TimeZoneReceiver;
+import com.escodro.viittaus.time.ZoneOffsetCache;
+
+import java.util.TimeZone;
+
+/**
+ * Custom view to show a grid of clocks, one for each time zone.
+ * <p/>
+ * The current instant is read once per frame and the time of each clock is derived from it with
+ * the cached offset of its zone. The dials and the zone names of all the clocks are rendered in a
+ * single static layer, and the hands of all the clocks are drawn with one call per paint, so the
+ * frame time stays flat as clocks are added. Like {@link ChronusView} in its tick mode, the view
+ * draws a single frame per second, aligned to the second boundary. Until time zones are set, it
+ * shows a single clock that follows the time zone of the device while attached to a window.
+ */
+public class WorldClockView extends AnimatedSurfaceView {
+
+    /**
+     * Milliseconds in one second.
+     */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /**
+     * Nanoseconds in one millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Radius of each clock relative to half of its cell.
+     */
+    private static final float CLOCK_RADIUS_RATIO = 0.8F;
+
+    /**
+     * Length of the hours pointer relative to the clock radius.
+     */
+    private static final float HOURS_POINTER_RATIO = 0.59F;
+
+    /**
+     * Length of the minutes and seconds pointers relative to the clock radius.
+     */
+    private static final float DEFAULT_POINTER_RATIO = 0.88F;
+
+    /**
+     * Length of the seconds pointer tail relative to the clock radius.
+     */
+    private static final float SECONDS_POINTER_TAIL_RATIO = 0.13F;
+
+    /**
+     * Quantity of coordinates of a line in the line arrays.
+     */
+    private static final int LINE_COORDINATES = 4;
+
+    /**
+     * Id of the GMT time zone, also returned for unknown ids.
+     */
+    private static final String GMT_ID = "GMT";
+
+    /**
+     * Paint of the clock backgrounds.
+     */
+    private Paint mClockBackgroundPaint;
+
+    /**
+     * Paint of the zone names.
+     */
+    private Paint mLabelPaint;
+
+    /**
+     * Paint of the seconds pointers.
+     */
+    private Paint mSecondPointerPaint;
+
+    /**
+     * Paint of the hours and minutes pointers.
+     */
+    private Paint mDefaultPointerPaint;
+
+    /**
+     * Source of the current instant.
+     */
+    private volatile TimeSource mTimeSource;
+
+    /**
+     * Boolean to represent if the view shows a single clock in the default time zone of the
+     * device, until time zones are set. Only accessed by the main thread.
+     */
+    private boolean mFollowDefaultZone = true;
+
+    /**
+     * Receiver of the changes of the time zone of the device.
+     */
+    private TimeZoneReceiver mTimeZoneReceiver;
+
+    /**
+     * Time zones set by the developer and not yet applied by the render thread, or null.
+     */
+    private volatile TimeZone[] mPendingZones;
+
+    /**
+     * Offset caches of the zones shown. Only accessed by the render thread.
+     */
+    private ZoneOffsetCache[] mZoneOffsets;
+
+    /**
+     * Angles of the hands of a clock, reused for every clock. Only accessed by the render thread.
+     */
+    private ClockHands mClockHands;
+
+    /**
+     * Center x of each clock.
+     */
+    private float[] mCenterX;
+
+    /**
+     * Center y of each clock.
+     */
+    private float[] mCenterY;
+
+    /**
+     * Lines of the hours and minutes pointers of all the clocks.
+     */
+    private float[] mDefaultPointerLines;
+
+    /**
+     * Lines of the seconds pointers of all the clocks.
+     */
+    private float[] mSecondPointerLines;
+
+    /**
+     * Radius of each clock.
+     */
+    private float mClockRadius;
+
+    /**
+     * Width of the surface.
+     */
+    private int mWidth;
+
+    /**
+     * Height of the surface.
+     */
+    private int mHeight;
+
+    /**
+     * Id of the static layer with the clock dials.
+     */
+    private int mDialLayer;
+
+    /**
+     * Create a new instance of {@link WorldClockView}
+     *
+     * @param context application context
+     */
+    public WorldClockView(Context context) {
+        super(context);
+        init();
+    }
+
+    /**
+     * Create a new instance of {@link WorldClockView}
+     *
+     * @param context application context
+     * @param attrs   attribute set
+     */
+    public WorldClockView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    /**
+     * Initialize the view and its components.
+     */
+    private void init() {
+        mClockBackgroundPaint = new Paint();
+        mClockBackgroundPaint.setAntiAlias(true);
+        mClockBackgroundPaint.setColor(getColor(R.color.player_gray_light));
+
+        mLabelPaint = new Paint();
+        mLabelPaint.setAntiAlias(true);
+        mLabelPaint.setTextAlign(Paint.Align.CENTER);
+        mLabelPaint.setColor(getColor(R.color.black));
+
+        mSecondPointerPaint = new Paint();
+        mSecondPointerPaint.setStyle(Paint.Style.STROKE);
+        mSecondPointerPaint.setAntiAlias(true);
+        mSecondPointerPaint.setColor(getColor(R.color.player_red));
+
+        mDefaultPointerPaint = new Paint();
+        mDefaultPointerPaint.setAntiAlias(true);
+        mDefaultPointerPaint.setStrokeCap(Paint.Cap.ROUND);
+        mDefaultPointerPaint.setColor(getColor(R.color.black));
+
+        mTimeSource = new SystemTimeSource();
+        mClockHands = new ClockHands();
+        mPendingZones = new TimeZone[]{TimeZone.getDefault()};
+        mTimeZoneReceiver = new TimeZoneReceiver(new TimeZoneReceiver.OnTimeZoneChangedListener() {
+            @Override
+            public void onTimeZoneChanged(TimeZone zone) {
+                if (mFollowDefaultZone) {
+                    mPendingZones = new TimeZone[]{zone};
+                    requestRender();
+                }
+            }
+        });
+
+        mDialLayer = addStaticLayer(new StaticLayer() {
+            @Override
+            public void onDrawLayer(Canvas canvas, int width, int height) {
+                drawDials(canvas);
+            }
+        });
+
+        setRenderMode(RENDER_MODE_WHEN_DIRTY);
+    }
+
+    /**
+     * Set the time zones of the clocks, shown from left to right and top to bottom.
+     *
+     * @param zones time zones of the clocks
+     */
+    public void setTimeZones(TimeZone[] zones) {
+        mFollowDefaultZone = false;
+        mPendingZones = zones.clone();
+        requestRender();
+    }
+
+    /**
+     * Set the time zones of the clocks by their ids, such as "Europe/Helsinki".
+     *
+     * @param zoneIds ids of the time zones of the clocks
+     *
+     * @throws IllegalArgumentException if an id is not a known time zone
+     */
+    public void setTimeZones(String[] zoneIds) {
+        final TimeZone[] zones = new TimeZone[zoneIds.length];
+        for (int i = 0; i < zoneIds.length; i++) {
+            zones[i] = TimeZone.getTimeZone(zoneIds[i]);
+            // An unknown id does not fail, it silently falls back to GMT.
+            if (GMT_ID.equals(zones[i].getID()) && !GMT_ID.equals(zoneIds[i])) {
+                throw new IllegalArgumentException("Unknown time zone: " + zoneIds[i]);
+            }
+        }
+        setTimeZones(zones);
+    }
+
+    /**
+     * Set the source of the current instant. The source is only called by the render thread.
+     *
+     * @param timeSource time source
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        mTimeSource = timeSource;
+        requestRender();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mTimeZoneReceiver.register(getContext());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mTimeZoneReceiver.unregister(getContext());
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onSurfaceSizeChanged(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        if (mZoneOffsets != null) {
+            updateLayout();
+        }
+    }
+
+    @Override
+    protected void onDrawOnCanvas(Canvas canvas) {
+        final TimeZone[] pendingZones = mPendingZones;
+        if (pendingZones != null) {
+            mPendingZones = null;
+            setZones(pendingZones);
+        }
+
+        final long now = mTimeSource.currentTimeMillis();
+        final long millisInSecond = now % MILLIS_PER_SECOND;
+        final long second = now - millisInSecond;
+
+        final int clockCount = mZoneOffsets.length;
+        for (int i = 0; i < clockCount; i++) {
+            mClockHands.setTime(second + mZoneOffsets[i].getOffset(second));
+            updatePointerLines(i);
+        }
+
+        drawStaticLayer(canvas, mDialLayer);
+        canvas.drawLines(mDefaultPointerLines, 0, clockCount * 2 * LINE_COORDINATES,
+                mDefaultPointerPaint);
+        canvas.drawLines(mSecondPointerLines, 0, clockCount * LINE_COORDINATES,
+                mSecondPointerPaint);
+
+        final long delay = MILLIS_PER_SECOND - millisInSecond;
+        requestRenderAt(System.nanoTime() + delay * NANOS_PER_MILLI);
+    }
+
+    /**
+     * Apply new time zones, creating the caches and the layout for them. Always called by the
+     * render thread.
+     *
+     * @param zones time zones of the clocks
+     */
+    private void setZones(TimeZone[] zones) {
+        final int clockCount = zones.length;
+        mZoneOffsets = new ZoneOffsetCache[clockCount];
+        for (int i = 0; i < clockCount; i++) {
+            mZoneOffsets[i] = new ZoneOffsetCache(zones[i]);
+        }
+        mCenterX = new float[clockCount];
+        mCenterY = new float[clockCount];
+        mDefaultPointerLines = new float[clockCount * 2 * LINE_COORDINATES];
+        mSecondPointerLines = new float[clockCount * LINE_COORDINATES];
+        updateLayout();
+    }
+
+    /**
+     * Arrange the clocks in the most square grid that fits the surface, and size the pointers for
+     * the clock radius.
+     */
+    private void updateLayout() {
+        final int clockCount = mZoneOffsets.length;
+        if (clockCount == 0 || mWidth <= 0 || mHeight <= 0) {
+            return;
+        }
+        final int columns = (int) Math.ceil(Math.sqrt(clockCount * (double) mWidth / mHeight));
+        final int clampedColumns = Math.max(1, Math.min(clockCount, columns));
+        final int rows = (clockCount + clampedColumns - 1) / clampedColumns;
+        final float cellWidth = (float) mWidth / clampedColumns;
+        final float cellHeight = (float) mHeight / rows;
+
+        for (int i = 0; i < clockCount; i++) {
+            mCenterX[i] = cellWidth * (i % clampedColumns + 0.5F);
+            mCenterY[i] = cellHeight * (i / clampedColumns + 0.5F);
+        }
+        mClockRadius = Math.min(cellWidth, cellHeight) / 2 * CLOCK_RADIUS_RATIO;
+        mDefaultPointerPaint.setStrokeWidth(Math.max(1, mClockRadius / 32));
+        mSecondPointerPaint.setStrokeWidth(Math.max(1, mClockRadius / 64));
+        mLabelPaint.setTextSize(Math.max(1, mClockRadius / 6));
+        invalidateStaticLayers();
+    }
+
+    /**
+     * Write the pointer lines of a clock with the angles in {@link #mClockHands}.
+     *
+     * @param clock index of the clock
+     */
+    private void updatePointerLines(int clock) {
+        final float centerX = mCenterX[clock];
+        final float centerY = mCenterY[clock];
+        final float pointerLength = mClockRadius * DEFAULT_POINTER_RATIO;
+
+        int index = clock * 2 * LINE_COORDINATES;
+        index = putLine(mDefaultPointerLines, index, centerX, centerY,
+                mClockHands.getHourAngle(), 0, mClockRadius * HOURS_POINTER_RATIO);
+        putLine(mDefaultPointerLines, index, centerX, centerY,
+                mClockHands.getMinuteAngle(), 0, pointerLength);
+        putLine(mSecondPointerLines, clock * LINE_COORDINATES, centerX, centerY,
+                mClockHands.getSecondAngle(), -mClockRadius * SECONDS_POINTER_TAIL_RATIO,
+                pointerLength);
+    }
+
+    /**
+     * Write a line along a clock hand in the array.
+     *
+     * @param lines   array of lines
+     * @param index   index of the first coordinate of the line in the array
+     * @param centerX center x of the clock
+     * @param centerY center y of the clock
+     * @param angle   angle of the hand in degrees, clockwise from twelve o'clock
+     * @param start   distance from the center where the line starts, negative for a tail
+     * @param end     distance from the center where the line ends
+     *
+     * @return index after the line in the array
+     */
+    private int putLine(float[] lines, int index, float centerX, float centerY, float angle,
+                        float start, float end) {
+        final double radians = Math.toRadians(angle);
+        final float x = (float) Math.sin(radians);
+        final float y = (float) -Math.cos(radians);
+        lines[index] = centerX + x * start;
+        lines[index + 1] = centerY + y * start;
+        lines[index + 2] = centerX + x * end;
+        lines[index + 3] = centerY + y * end;
+        return index + LINE_COORDINATES;
+    }
+
+    /**
+     * Draw the dials and the zone names of all the clocks. It is only called when the static layer
+     * is rendered.
+     *
+     * @param canvas canvas of the static layer
+     */
+    private void drawDials(Canvas canvas) {
+        if (mZoneOffsets == null) {
+            return;
+        }
+        for (int i = 0; i < mZoneOffsets.length; i++) {
+            canvas.drawCircle(mCenterX[i], mCenterY[i], mClockRadius, mClockBackgroundPaint);
+            canvas.drawText(mZoneOffsets[i].getZone().getID(), mCenterX[i],
+                    mCenterY[i] + mClockRadius * 1.2F, mLabelPaint);
+        }
+    }
+}
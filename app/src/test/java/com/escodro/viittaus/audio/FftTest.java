@@ -0,0 +1,69 @@
+package com.escodro.viittaus.audio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests of {@link Fft}.
+ */
+public class FftTest {
+
+    /**
+     * Quantity of points of the transforms tested.
+     */
+    private static final int SIZE = 64;
+
+    /**
+     * Tolerance of the magnitudes compared.
+     */
+    private static final float DELTA = 1e-3F;
+
+    @Test
+    public void sineHasPeakOnlyInItsBin() {
+        final int bin = 8;
+        final float[] real = new float[SIZE];
+        final float[] imag = new float[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            real[i] = (float) Math.sin(2 * Math.PI * bin * i / SIZE);
+        }
+
+        new Fft(SIZE).transform(real, imag);
+
+        for (int i = 0; i < SIZE; i++) {
+            final float expected = i == bin || i == SIZE - bin ? SIZE / 2F : 0;
+            assertEquals("bin " + i, expected, magnitude(real, imag, i), DELTA);
+        }
+    }
+
+    @Test
+    public void impulseHasFlatSpectrum() {
+        final float[] real = new float[SIZE];
+        final float[] imag = new float[SIZE];
+        real[0] = 1;
+
+        new Fft(SIZE).transform(real, imag);
+
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals("bin " + i, 1, magnitude(real, imag, i), DELTA);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeMustBePowerOfTwo() {
+        new Fft(SIZE + 1);
+    }
+
+    /**
+     * Get the magnitude of a bin of the transform.
+     *
+     * @param real real part of the transform
+     * @param imag imaginary part of the transform
+     * @param bin  index of the bin
+     *
+     * @return magnitude of the bin
+     */
+    private static float magnitude(float[] real, float[] imag, int bin) {
+        return (float) Math.sqrt(real[bin] * real[bin] + imag[bin] * imag[bin]);
+    }
+}
@@ -0,0 +1,132 @@
+package com.escodro.viittaus.audio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link SpectrumAnalyzer} with synthetic sines.
+ */
+public class SpectrumAnalyzerTest {
+
+    /**
+     * Quantity of samples in each analysis.
+     */
+    private static final int FFT_SIZE = 1024;
+
+    /**
+     * Quantity of frequency bands.
+     */
+    private static final int BAND_COUNT = 16;
+
+    /**
+     * Sample rate of the sines, in Hz, so each FFT bin is 8 Hz wide.
+     */
+    private static final int SAMPLE_RATE = 8192;
+
+    /**
+     * Frequency of the sines, in Hz, centered in a bin.
+     */
+    private static final float FREQUENCY = 1000F;
+
+    /**
+     * Band with {@link #FREQUENCY}, between 963 Hz and 1280 Hz in the logarithmic scale from
+     * {@link SpectrumAnalyzer#MIN_FREQUENCY} to 4096 Hz.
+     */
+    private static final int FREQUENCY_BAND = 11;
+
+    @Test
+    public void fullScaleSineHasMaxVolumeInItsBand() {
+        final SpectrumAnalyzer analyzer = new SpectrumAnalyzer(FFT_SIZE, BAND_COUNT);
+
+        analyzer.analyze(createSine(1), 0, FFT_SIZE, SAMPLE_RATE);
+
+        assertEquals(FREQUENCY_BAND, getPeakBand(analyzer.getBands()));
+        assertEquals(1, analyzer.getBands()[FREQUENCY_BAND], 0.01F);
+        assertEquals(100, analyzer.getVolumes()[FREQUENCY_BAND]);
+    }
+
+    @Test
+    public void volumeFollowsDecibelScale() {
+        final SpectrumAnalyzer analyzer = new SpectrumAnalyzer(FFT_SIZE, BAND_COUNT);
+
+        // -20 dB is two thirds of the way from the -60 dB floor.
+        analyzer.analyze(createSine(0.1F), 0, FFT_SIZE, SAMPLE_RATE);
+        assertEquals(67, analyzer.getVolumes()[FREQUENCY_BAND]);
+
+        analyzer.analyze(createSine(0.001F), 0, FFT_SIZE, SAMPLE_RATE);
+        assertEquals(0, analyzer.getVolumes()[FREQUENCY_BAND]);
+    }
+
+    @Test
+    public void silenceHasNoVolume() {
+        final SpectrumAnalyzer analyzer = new SpectrumAnalyzer(FFT_SIZE, BAND_COUNT);
+
+        analyzer.analyze(new float[FFT_SIZE], 0, FFT_SIZE, SAMPLE_RATE);
+
+        assertArrayEquals(new int[BAND_COUNT], analyzer.getVolumes());
+    }
+
+    @Test
+    public void shortSamplesMatchFloatSamples() {
+        final float[] sine = createSine(0.5F);
+        final short[] samples = new short[FFT_SIZE];
+        for (int i = 0; i < FFT_SIZE; i++) {
+            samples[i] = (short) Math.round(sine[i] * Short.MAX_VALUE);
+        }
+        final SpectrumAnalyzer floatAnalyzer = new SpectrumAnalyzer(FFT_SIZE, BAND_COUNT);
+        final SpectrumAnalyzer shortAnalyzer = new SpectrumAnalyzer(FFT_SIZE, BAND_COUNT);
+
+        floatAnalyzer.analyze(sine, 0, FFT_SIZE, SAMPLE_RATE);
+        shortAnalyzer.analyze(samples, 0, FFT_SIZE, SAMPLE_RATE);
+
+        assertArrayEquals(floatAnalyzer.getVolumes(), shortAnalyzer.getVolumes());
+    }
+
+    @Test
+    public void higherSineMovesToHigherBand() {
+        final SpectrumAnalyzer analyzer = new SpectrumAnalyzer(FFT_SIZE, BAND_COUNT);
+        final float[] samples = new float[FFT_SIZE];
+        for (int i = 0; i < FFT_SIZE; i++) {
+            samples[i] = (float) Math.sin(2 * Math.PI * FREQUENCY * 3 * i / SAMPLE_RATE);
+        }
+
+        analyzer.analyze(samples, 0, FFT_SIZE, SAMPLE_RATE);
+
+        assertTrue(getPeakBand(analyzer.getBands()) > FREQUENCY_BAND);
+    }
+
+    /**
+     * Create a frame with a sine of {@link #FREQUENCY}.
+     *
+     * @param amplitude amplitude of the sine, where 1 is full scale
+     *
+     * @return the samples
+     */
+    private static float[] createSine(float amplitude) {
+        final float[] samples = new float[FFT_SIZE];
+        for (int i = 0; i < FFT_SIZE; i++) {
+            samples[i] = amplitude * (float) Math.sin(2 * Math.PI * FREQUENCY * i / SAMPLE_RATE);
+        }
+        return samples;
+    }
+
+    /**
+     * Get the band with the highest magnitude.
+     *
+     * @param bands band magnitudes
+     *
+     * @return index of the band
+     */
+    private static int getPeakBand(float[] bands) {
+        int peak = 0;
+        for (int band = 1; band < bands.length; band++) {
+            if (bands[band] > bands[peak]) {
+                peak = band;
+            }
+        }
+        return peak;
+    }
+}